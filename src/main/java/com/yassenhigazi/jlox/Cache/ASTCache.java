@@ -0,0 +1,113 @@
+package com.yassenhigazi.jlox.Cache;
+
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the resolved tree of each script in a file named after the SHA-256 of its source, so running a script that
+ * hasn't changed skips scanning, parsing and resolving and only reads the tree back. A file starts with the format
+ * version and the full hash; one that doesn't match, or can't be read, is a miss and gets written again.
+ */
+public class ASTCache {
+    private static final int MAGIC = 0x4A4C4F58;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final boolean debug;
+
+    public ASTCache(Path directory, boolean debug) {
+        this.directory = directory;
+        this.debug = debug;
+    }
+
+    // $XDG_CACHE_HOME/jlox, or ~/.cache/jlox when it isn't set
+    public static Path defaultDirectory() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+
+        if (cacheHome == null || cacheHome.isEmpty()) {
+            return Paths.get(System.getProperty("user.home"), ".cache", "jlox");
+        }
+
+        return Paths.get(cacheHome, "jlox");
+    }
+
+    // returns null when the script isn't cached
+    public List<ASTStatement> load(byte[] hash) {
+        Path file = fileOf(hash);
+
+        if (!Files.isRegularFile(file)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != ASTFormat.VERSION) return null;
+
+            byte[] stored = new byte[hash.length];
+
+            in.readFully(stored);
+
+            if (!Arrays.equals(stored, hash)) return null;
+
+            List<ASTStatement> statements = new ASTReader(in).readStatements();
+
+            if (debug) System.err.println("[cache] loaded " + file);
+
+            return statements;
+        } catch (IOException | RuntimeException e) {
+            // a truncated or damaged file is the same as no file
+            if (debug) System.err.println("[cache] could not read " + file + ": " + e);
+
+            return null;
+        }
+    }
+
+    // the cache only saves time, a script runs the same when its tree can't be stored
+    public void store(byte[] hash, List<ASTStatement> statements) {
+        Path file = fileOf(hash);
+
+        try {
+            Files.createDirectories(directory);
+
+            // written next to the real file and moved over it, so a run reading it at the same time sees all or nothing
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(ASTFormat.VERSION);
+                    out.write(hash);
+
+                    new ASTWriter(out).writeStatements(statements);
+                }
+
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+
+            if (debug) System.err.println("[cache] stored " + file);
+        } catch (IOException e) {
+            if (debug) System.err.println("[cache] could not write " + file + ": " + e);
+        }
+    }
+
+    private Path fileOf(byte[] hash) {
+        StringBuilder name = new StringBuilder();
+
+        for (byte b : hash) {
+            name.append(String.format("%02x", b));
+        }
+
+        return directory.resolve(name.append(".ast").toString());
+    }
+}
@@ -0,0 +1,47 @@
+package com.yassenhigazi.jlox.Cache;
+
+// The tags ASTWriter puts in front of every node and value, and ASTReader switches on.
+final class ASTFormat {
+    // bumped whenever the layout changes, a cache file of another version is ignored
+    static final int VERSION = 3;
+
+    static final int NULL = 0;
+
+    // expressions
+    static final int BINARY = 1;
+    static final int CALL = 2;
+    static final int GET = 3;
+    static final int GROUPING = 4;
+    static final int LITERAL = 5;
+    static final int SET = 6;
+    static final int SUPER = 7;
+    static final int THIS = 8;
+    static final int UNARY = 9;
+    static final int VARIABLE = 10;
+    static final int ASSIGN = 11;
+    static final int LOGICAL = 12;
+
+    // statements
+    static final int BLOCK = 1;
+    static final int CLASS = 2;
+    static final int EXPRESSION = 3;
+    static final int FUNCTION = 4;
+    static final int PRINT = 5;
+    static final int RETURN = 6;
+    static final int VAR = 7;
+    static final int WHILE = 8;
+    static final int IF = 9;
+
+    // values
+    static final int NIL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int NUMBER = 3;
+    static final int STRING = 4;
+
+    // a string the reader hasn't seen yet, its text follows
+    static final int NEW_STRING = -1;
+
+    private ASTFormat() {
+    }
+}
@@ -0,0 +1,263 @@
+package com.yassenhigazi.jlox.Cache;
+
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Scanner.Token;
+import com.yassenhigazi.jlox.Scanner.TokenType;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads back a tree written by ASTWriter, with the resolved depths and slots already in place.
+class ASTReader {
+    private static final TokenType[] tokenTypes = TokenType.values();
+
+    private final DataInputStream in;
+
+    private final List<String> strings = new ArrayList<>();
+
+    ASTReader(DataInputStream in) {
+        this.in = in;
+    }
+
+    List<ASTStatement> readStatements() throws IOException {
+        int count = in.readInt();
+
+        List<ASTStatement> statements = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            statements.add(readStatement());
+        }
+
+        return statements;
+    }
+
+    private ASTStatement readStatement() throws IOException {
+        int tag = in.readByte();
+
+        switch (tag) {
+            case ASTFormat.NULL:
+                return null;
+
+            case ASTFormat.BLOCK: {
+                ASTStatement.Block block = new ASTStatement.Block(readStatements());
+
+                block.frameSize = in.readInt();
+                block.enclosesFunctions = in.readBoolean();
+
+                return block;
+            }
+
+            case ASTFormat.CLASS: {
+                Token name = readToken();
+                ASTExpression.Variable superclass = (ASTExpression.Variable) readExpression();
+
+                int count = in.readInt();
+
+                List<ASTStatement.Function> methods = new ArrayList<>(count);
+
+                for (int i = 0; i < count; i++) {
+                    methods.add((ASTStatement.Function) readStatement());
+                }
+
+                ASTStatement.Class statement = new ASTStatement.Class(name, superclass, methods);
+
+                statement.slot = in.readInt();
+
+                return statement;
+            }
+
+            case ASTFormat.EXPRESSION:
+                return new ASTStatement.Expression(readExpression());
+
+            case ASTFormat.FUNCTION: {
+                Token name = readToken();
+
+                int count = in.readInt();
+
+                List<Token> params = new ArrayList<>(count);
+
+                for (int i = 0; i < count; i++) {
+                    params.add(readToken());
+                }
+
+                ASTStatement.Function function = new ASTStatement.Function(name, params, readStatements());
+
+                function.slot = in.readInt();
+                function.frameSize = in.readInt();
+                function.enclosesFunctions = in.readBoolean();
+
+                return function;
+            }
+
+            case ASTFormat.PRINT:
+                return new ASTStatement.Print(readExpression());
+
+            case ASTFormat.RETURN: {
+                ASTStatement.Return statement = new ASTStatement.Return(readToken(), readExpression());
+
+                statement.tailCall = in.readBoolean();
+
+                return statement;
+            }
+
+            case ASTFormat.VAR: {
+                ASTStatement.Var statement = new ASTStatement.Var(readToken(), readExpression());
+
+                statement.slot = in.readInt();
+
+                return statement;
+            }
+
+            case ASTFormat.WHILE:
+                return new ASTStatement.While(readExpression(), readStatement());
+
+            case ASTFormat.IF:
+                return new ASTStatement.If(readExpression(), readStatement(), readStatement());
+
+            default:
+                throw new IOException("Unknown statement tag " + tag + ".");
+        }
+    }
+
+    private ASTExpression readExpression() throws IOException {
+        int tag = in.readByte();
+
+        switch (tag) {
+            case ASTFormat.NULL:
+                return null;
+
+            case ASTFormat.BINARY:
+                return new ASTExpression.Binary(readExpression(), readToken(), readExpression());
+
+            case ASTFormat.CALL: {
+                ASTExpression callee = readExpression();
+                Token paren = readToken();
+
+                int count = in.readInt();
+
+                List<ASTExpression> arguments = new ArrayList<>(count);
+
+                for (int i = 0; i < count; i++) {
+                    arguments.add(readExpression());
+                }
+
+                ASTExpression.Call expression = new ASTExpression.Call(callee, paren, arguments);
+
+                expression.arityChecked = in.readBoolean();
+
+                return expression;
+            }
+
+            case ASTFormat.GET:
+                return new ASTExpression.Get(readExpression(), readToken());
+
+            case ASTFormat.GROUPING:
+                return new ASTExpression.Grouping(readExpression());
+
+            case ASTFormat.LITERAL:
+                return new ASTExpression.Literal(readValue(), readToken());
+
+            case ASTFormat.SET:
+                return new ASTExpression.Set(readExpression(), readToken(), readExpression());
+
+            case ASTFormat.SUPER: {
+                ASTExpression.Super expression = new ASTExpression.Super(readToken(), readToken());
+
+                expression.depth = in.readInt();
+                expression.slot = in.readInt();
+
+                return expression;
+            }
+
+            case ASTFormat.THIS: {
+                ASTExpression.This expression = new ASTExpression.This(readToken());
+
+                expression.depth = in.readInt();
+                expression.slot = in.readInt();
+
+                return expression;
+            }
+
+            case ASTFormat.UNARY:
+                return new ASTExpression.Unary(readToken(), readExpression());
+
+            case ASTFormat.VARIABLE: {
+                ASTExpression.Variable expression = new ASTExpression.Variable(readToken());
+
+                expression.depth = in.readInt();
+                expression.slot = in.readInt();
+
+                return expression;
+            }
+
+            case ASTFormat.ASSIGN: {
+                ASTExpression.Assign expression = new ASTExpression.Assign(readToken(), readExpression());
+
+                expression.depth = in.readInt();
+                expression.slot = in.readInt();
+
+                return expression;
+            }
+
+            case ASTFormat.LOGICAL:
+                return new ASTExpression.Logical(readExpression(), readToken(), readExpression());
+
+            default:
+                throw new IOException("Unknown expression tag " + tag + ".");
+        }
+    }
+
+    private Token readToken() throws IOException {
+        TokenType type = tokenTypes[in.readUnsignedByte()];
+        String lexeme = readString();
+        Object literal = readValue();
+        int line = in.readInt();
+        int column = in.readInt();
+
+        return new Token(type, lexeme, literal, line, column);
+    }
+
+    private Object readValue() throws IOException {
+        int tag = in.readByte();
+
+        switch (tag) {
+            case ASTFormat.NIL:
+                return null;
+
+            case ASTFormat.FALSE:
+                return false;
+
+            case ASTFormat.TRUE:
+                return true;
+
+            case ASTFormat.NUMBER:
+                return in.readDouble();
+
+            case ASTFormat.STRING:
+                return readString();
+
+            default:
+                throw new IOException("Unknown value tag " + tag + ".");
+        }
+    }
+
+    private String readString() throws IOException {
+        int index = in.readInt();
+
+        if (index != ASTFormat.NEW_STRING) return strings.get(index);
+
+        byte[] bytes = new byte[in.readInt()];
+
+        in.readFully(bytes);
+
+        String value = new String(bytes, StandardCharsets.UTF_8);
+
+        strings.add(value);
+
+        return value;
+    }
+}
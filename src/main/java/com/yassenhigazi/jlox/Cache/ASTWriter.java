@@ -0,0 +1,368 @@
+package com.yassenhigazi.jlox.Cache;
+
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Scanner.Token;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a resolved tree in the format ASTReader reads. Every node is its tag followed by its fields in declaration
+ * order, with the fields the Resolver filled in after them; a string is written once and referred to by its index
+ * after that, so the lexeme of a name used a thousand times is stored once.
+ */
+class ASTWriter implements ASTExpression.Visitor<Void>, ASTStatement.Visitor<Void> {
+    private final DataOutputStream out;
+
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    ASTWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    void writeStatements(List<ASTStatement> statements) throws IOException {
+        try {
+            writeInt(statements.size());
+
+            for (ASTStatement statement : statements) {
+                write(statement);
+            }
+        } catch (UncheckedIOException e) {
+            // the visitor methods can't throw IOException, so they wrap it
+            throw e.getCause();
+        }
+    }
+
+    private void write(ASTStatement statement) {
+        if (statement == null) {
+            writeByte(ASTFormat.NULL);
+        } else {
+            statement.accept(this);
+        }
+    }
+
+    private void write(ASTExpression expression) {
+        if (expression == null) {
+            writeByte(ASTFormat.NULL);
+        } else {
+            expression.accept(this);
+        }
+    }
+
+    private void writeToken(Token token) {
+        writeByte(token.type.ordinal());
+        writeString(token.lexeme);
+        writeValue(token.literal);
+        writeInt(token.line);
+        writeInt(token.column);
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeByte(ASTFormat.NIL);
+        } else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? ASTFormat.TRUE : ASTFormat.FALSE);
+        } else if (value instanceof Double) {
+            writeByte(ASTFormat.NUMBER);
+
+            try {
+                out.writeDouble((Double) value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            writeByte(ASTFormat.STRING);
+            writeString((String) value);
+        }
+    }
+
+    private void writeString(String value) {
+        Integer index = strings.get(value);
+
+        if (index != null) {
+            writeInt(index);
+
+            return;
+        }
+
+        strings.put(value, strings.size());
+
+        writeInt(ASTFormat.NEW_STRING);
+
+        try {
+            // writeUTF is limited to 64 KB, a string literal isn't
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeByte(int value) {
+        try {
+            out.writeByte(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    @Override
+    public Void visitBinaryASTExpression(ASTExpression.Binary expr) {
+        writeByte(ASTFormat.BINARY);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallASTExpression(ASTExpression.Call expr) {
+        writeByte(ASTFormat.CALL);
+        write(expr.callee);
+        writeToken(expr.paren);
+        writeInt(expr.arguments.size());
+
+        for (ASTExpression argument : expr.arguments) {
+            write(argument);
+        }
+
+        writeBoolean(expr.arityChecked);
+
+        return null;
+    }
+
+    @Override
+    public Void visitGetASTExpression(ASTExpression.Get expr) {
+        writeByte(ASTFormat.GET);
+        write(expr.object);
+        writeToken(expr.name);
+
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingASTExpression(ASTExpression.Grouping expr) {
+        writeByte(ASTFormat.GROUPING);
+        write(expr.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralASTExpression(ASTExpression.Literal expr) {
+        writeByte(ASTFormat.LITERAL);
+        writeValue(expr.value);
+        writeToken(expr.token);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSetASTExpression(ASTExpression.Set expr) {
+        writeByte(ASTFormat.SET);
+        write(expr.object);
+        writeToken(expr.name);
+        write(expr.value);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSuperASTExpression(ASTExpression.Super expr) {
+        writeByte(ASTFormat.SUPER);
+        writeToken(expr.keyword);
+        writeToken(expr.method);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+
+        return null;
+    }
+
+    @Override
+    public Void visitThisASTExpression(ASTExpression.This expr) {
+        writeByte(ASTFormat.THIS);
+        writeToken(expr.keyword);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryASTExpression(ASTExpression.Unary expr) {
+        writeByte(ASTFormat.UNARY);
+        writeToken(expr.operator);
+        write(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitVariableASTExpression(ASTExpression.Variable expr) {
+        writeByte(ASTFormat.VARIABLE);
+        writeToken(expr.name);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+
+        return null;
+    }
+
+    @Override
+    public Void visitAssignASTExpression(ASTExpression.Assign expr) {
+        writeByte(ASTFormat.ASSIGN);
+        writeToken(expr.name);
+        write(expr.value);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalASTExpression(ASTExpression.Logical expr) {
+        writeByte(ASTFormat.LOGICAL);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitMemoASTExpression(ASTExpression.Memo expr) {
+        // a memo only saves work, the expression it wraps gives the same value
+        write(expr.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBlockASTStatement(ASTStatement.Block expr) {
+        writeByte(ASTFormat.BLOCK);
+        writeInt(expr.statements.size());
+
+        for (ASTStatement statement : expr.statements) {
+            write(statement);
+        }
+
+        writeInt(expr.frameSize);
+        writeBoolean(expr.enclosesFunctions);
+
+        return null;
+    }
+
+    @Override
+    public Void visitClassASTStatement(ASTStatement.Class expr) {
+        writeByte(ASTFormat.CLASS);
+        writeToken(expr.name);
+        write(expr.superclass);
+        writeInt(expr.methods.size());
+
+        for (ASTStatement.Function method : expr.methods) {
+            write(method);
+        }
+
+        writeInt(expr.slot);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionASTStatement(ASTStatement.Expression expr) {
+        writeByte(ASTFormat.EXPRESSION);
+        write(expr.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionASTStatement(ASTStatement.Function expr) {
+        writeByte(ASTFormat.FUNCTION);
+        writeToken(expr.name);
+        writeInt(expr.params.size());
+
+        for (Token param : expr.params) {
+            writeToken(param);
+        }
+
+        writeInt(expr.body.size());
+
+        for (ASTStatement statement : expr.body) {
+            write(statement);
+        }
+
+        writeInt(expr.slot);
+        writeInt(expr.frameSize);
+        writeBoolean(expr.enclosesFunctions);
+
+        return null;
+    }
+
+    @Override
+    public Void visitPrintASTStatement(ASTStatement.Print expr) {
+        writeByte(ASTFormat.PRINT);
+        write(expr.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnASTStatement(ASTStatement.Return expr) {
+        writeByte(ASTFormat.RETURN);
+        writeToken(expr.keyword);
+        write(expr.value);
+        writeBoolean(expr.tailCall);
+
+        return null;
+    }
+
+    @Override
+    public Void visitVarASTStatement(ASTStatement.Var expr) {
+        writeByte(ASTFormat.VAR);
+        writeToken(expr.name);
+        write(expr.initializer);
+        writeInt(expr.slot);
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileASTStatement(ASTStatement.While expr) {
+        writeByte(ASTFormat.WHILE);
+        write(expr.condition);
+        write(expr.body);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfASTStatement(ASTStatement.If expr) {
+        writeByte(ASTFormat.IF);
+        write(expr.condition);
+        write(expr.thenBranch);
+        write(expr.elseBranch);
+
+        return null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.yassenhigazi.jlox.Closures;
+
+interface Callable {
+    int arity();
+
+    Object call(Object[] arguments);
+}
@@ -0,0 +1,48 @@
+package com.yassenhigazi.jlox.Closures;
+
+import com.yassenhigazi.jlox.Scanner.Symbols;
+import com.yassenhigazi.jlox.Utils.SymbolMap;
+
+class ClosureClass implements Callable {
+    static final int INIT = Symbols.intern("init");
+
+    final String name;
+
+    // own and inherited methods, so lookups never walk the superclass chain
+    private final SymbolMap<ClosureFunction> methods = new SymbolMap<>();
+
+    private final ClosureFunction initializer;
+
+    ClosureClass(String name, ClosureClass superclass, SymbolMap<ClosureFunction> methods) {
+        this.name = name;
+
+        if (superclass != null) this.methods.putAll(superclass.methods);
+
+        this.methods.putAll(methods);
+
+        this.initializer = this.methods.get(INIT);
+    }
+
+    ClosureFunction findMethod(int symbol) {
+        return methods.get(symbol);
+    }
+
+    @Override
+    public int arity() {
+        return initializer == null ? 0 : initializer.arity();
+    }
+
+    @Override
+    public Object call(Object[] arguments) {
+        ClosureInstance instance = new ClosureInstance(this);
+
+        if (initializer != null) initializer.bind(instance).call(arguments);
+
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return "LoxClass {" + "name=" + name + '}';
+    }
+}
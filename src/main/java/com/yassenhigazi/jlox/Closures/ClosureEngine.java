@@ -0,0 +1,42 @@
+package com.yassenhigazi.jlox.Closures;
+
+import com.yassenhigazi.jlox.Environment.Environment;
+import com.yassenhigazi.jlox.Environment.FrameStack;
+import com.yassenhigazi.jlox.Errors.RuntimeError;
+import com.yassenhigazi.jlox.JLox;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+
+import java.util.List;
+
+/**
+ * Runs resolved programs by first turning every statement and expression into a node that only has to be called: the
+ * operator, the depth and slot of each variable and the value of each literal are fixed when the node is made, so
+ * running it needs neither the visitor dispatch nor the switches of the Interpreter.
+ */
+public class ClosureEngine {
+    final Environment globals = new Environment();
+
+    // environments of functions and blocks that no closure captures, reused from one call to the next
+    final FrameStack frames = new FrameStack();
+
+    // the value of the last executed return statement, read by the function that returns it
+    Object returnValue;
+
+    // the call a return in tail position left for the function to run
+    ClosureFunction tailFunction;
+    Object[] tailArguments;
+
+    public void interpret(List<ASTStatement> statements) {
+        globals.define("clock", new NativeClock());
+
+        try {
+            StatementNode[] program = new NodeCompiler(this).compile(statements);
+
+            for (StatementNode statement : program) {
+                statement.execute(globals);
+            }
+        } catch (RuntimeError error) {
+            JLox.runtimeError(error);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.yassenhigazi.jlox.Closures;
+
+import com.yassenhigazi.jlox.Environment.Environment;
+
+/**
+ * A function whose body was turned into nodes. It is shared by every closure made from the same declaration through
+ * its Body, only the environment it closes over and the receiver of a bound method differ.
+ */
+class ClosureFunction implements Callable {
+    // what the compiler made of a function declaration
+    static final class Body {
+        final String name;
+        final int arity;
+        final int frameSize;
+        final boolean enclosesFunctions;
+        final boolean isInitializer;
+
+        // filled in after the declaration is compiled, so the body can refer to the function itself
+        StatementNode[] statements;
+
+        Body(String name, int arity, int frameSize, boolean enclosesFunctions, boolean isInitializer) {
+            this.name = name;
+            this.arity = arity;
+            this.frameSize = frameSize;
+            this.enclosesFunctions = enclosesFunctions;
+            this.isInitializer = isInitializer;
+        }
+    }
+
+    private final ClosureEngine engine;
+    private final Body body;
+    private final Environment closure;
+
+    // the instance a bound method runs on, it takes the first slot of the frame
+    private final ClosureInstance receiver;
+
+    ClosureFunction(ClosureEngine engine, Body body, Environment closure, ClosureInstance receiver) {
+        this.engine = engine;
+        this.body = body;
+        this.closure = closure;
+        this.receiver = receiver;
+    }
+
+    ClosureFunction bind(ClosureInstance instance) {
+        return new ClosureFunction(engine, body, closure, instance);
+    }
+
+    @Override
+    public int arity() {
+        return body.arity;
+    }
+
+    @Override
+    public Object call(Object[] arguments) {
+        ClosureFunction function = this;
+
+        // calls in tail position come back here instead of growing the Java stack
+        while (true) {
+            Completion completion = function.run(arguments);
+
+            if (completion != Completion.TAIL_CALL) {
+                if (function.body.isInitializer) return function.receiver;
+
+                if (completion == Completion.RETURN) return engine.returnValue;
+
+                return null;
+            }
+
+            function = engine.tailFunction;
+            arguments = engine.tailArguments;
+        }
+    }
+
+    private Completion run(Object[] arguments) {
+        // a frame no closure can hold on to goes back on the frame stack when the call ends
+        Environment frame = body.enclosesFunctions ? new Environment(closure, body.frameSize) : engine.frames.push(closure, body.frameSize);
+
+        try {
+            int first = 0;
+
+            if (receiver != null) {
+                frame.define(0, receiver);
+
+                first = 1;
+            }
+
+            for (int i = 0; i < arguments.length; i++) {
+                frame.define(first + i, arguments[i]);
+            }
+
+            for (StatementNode statement : body.statements) {
+                Completion completion = statement.execute(frame);
+
+                if (completion != Completion.NORMAL) return completion;
+            }
+
+            return Completion.NORMAL;
+        } finally {
+            if (!body.enclosesFunctions) engine.frames.pop();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + body.name + ">";
+    }
+}
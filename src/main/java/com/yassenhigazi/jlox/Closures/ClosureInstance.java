@@ -0,0 +1,36 @@
+package com.yassenhigazi.jlox.Closures;
+
+import com.yassenhigazi.jlox.Errors.RuntimeError;
+import com.yassenhigazi.jlox.Scanner.Token;
+import com.yassenhigazi.jlox.Utils.SymbolMap;
+
+class ClosureInstance {
+    private final ClosureClass klass;
+    private final SymbolMap<Object> fields = new SymbolMap<>();
+
+    ClosureInstance(ClosureClass klass) {
+        this.klass = klass;
+    }
+
+    // fields shadow methods
+    Object get(Token name) {
+        Object value = fields.get(name.symbol);
+
+        if (value != null || fields.containsKey(name.symbol)) return value;
+
+        ClosureFunction method = klass.findMethod(name.symbol);
+
+        if (method != null) return method.bind(this);
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    void set(Token name, Object value) {
+        fields.put(name.symbol, value);
+    }
+
+    @Override
+    public String toString() {
+        return klass.name + " instance";
+    }
+}
@@ -0,0 +1,8 @@
+package com.yassenhigazi.jlox.Closures;
+
+// how a statement ended, the value of a return and the call of a tail call are left on the engine
+enum Completion {
+    NORMAL,
+    RETURN,
+    TAIL_CALL
+}
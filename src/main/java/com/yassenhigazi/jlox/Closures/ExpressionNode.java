@@ -0,0 +1,9 @@
+package com.yassenhigazi.jlox.Closures;
+
+import com.yassenhigazi.jlox.Environment.Environment;
+
+// an expression with its operator, slots and constants already fixed, evaluated in the environment it runs in
+@FunctionalInterface
+interface ExpressionNode {
+    Object evaluate(Environment environment);
+}
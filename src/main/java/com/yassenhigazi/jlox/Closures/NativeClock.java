@@ -0,0 +1,18 @@
+package com.yassenhigazi.jlox.Closures;
+
+class NativeClock implements Callable {
+    @Override
+    public int arity() {
+        return 0;
+    }
+
+    @Override
+    public Object call(Object[] arguments) {
+        return (double) System.currentTimeMillis() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
@@ -0,0 +1,611 @@
+package com.yassenhigazi.jlox.Closures;
+
+import com.yassenhigazi.jlox.Environment.Environment;
+import com.yassenhigazi.jlox.Errors.NotCallableError;
+import com.yassenhigazi.jlox.Errors.RuntimeError;
+import com.yassenhigazi.jlox.Errors.ZeroDivisionError;
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Scanner.Token;
+import com.yassenhigazi.jlox.Scanner.TokenType;
+import com.yassenhigazi.jlox.Utils.DoubleCache;
+import com.yassenhigazi.jlox.Utils.SymbolMap;
+
+import java.util.List;
+
+/**
+ * Turns the resolved AST into nodes for the ClosureEngine, walking every declaration once. Each node is a lambda that
+ * captures the nodes of its operands and whatever the resolver worked out for it, and gives the same results and raises
+ * the same errors as the Interpreter.
+ */
+class NodeCompiler implements ASTExpression.Visitor<ExpressionNode>, ASTStatement.Visitor<StatementNode> {
+    private final ClosureEngine engine;
+
+    NodeCompiler(ClosureEngine engine) {
+        this.engine = engine;
+    }
+
+    StatementNode[] compile(List<? extends ASTStatement> statements) {
+        StatementNode[] nodes = new StatementNode[statements.size()];
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(statements.get(i));
+        }
+
+        return nodes;
+    }
+
+    private StatementNode compile(ASTStatement statement) {
+        return statement.accept(this);
+    }
+
+    private ExpressionNode compile(ASTExpression expr) {
+        return expr.accept(this);
+    }
+
+    private ExpressionNode[] compileAll(List<ASTExpression> expressions) {
+        ExpressionNode[] nodes = new ExpressionNode[expressions.size()];
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(expressions.get(i));
+        }
+
+        return nodes;
+    }
+
+    @Override
+    public ExpressionNode visitBinaryASTExpression(ASTExpression.Binary expr) {
+        ExpressionNode left = compile(expr.left);
+        ExpressionNode right = compile(expr.right);
+
+        Token operator = expr.operator;
+
+        return switch (operator.type) {
+            case PLUS -> environment -> add(left.evaluate(environment), right.evaluate(environment), operator);
+
+            case MINUS, STAR -> arithmetic(left, right, operator);
+
+            case SLASH -> environment -> divide(left.evaluate(environment), right.evaluate(environment), operator);
+
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL, EQUAL_EQUAL, BANG_EQUAL -> comparison(left, right, operator);
+
+            default -> environment -> {
+                left.evaluate(environment);
+                right.evaluate(environment);
+
+                return null;
+            };
+        };
+    }
+
+    @Override
+    public ExpressionNode visitCallASTExpression(ASTExpression.Call expr) {
+        ExpressionNode callee = compile(expr.callee);
+        ExpressionNode[] arguments = compileAll(expr.arguments);
+
+        Token paren = expr.paren;
+        boolean arityChecked = expr.arityChecked;
+
+        return environment -> {
+            Callable function = callable(callee.evaluate(environment), paren);
+
+            return function.call(arguments(environment, arguments, function, paren, arityChecked));
+        };
+    }
+
+    @Override
+    public ExpressionNode visitGetASTExpression(ASTExpression.Get expr) {
+        ExpressionNode object = compile(expr.object);
+
+        Token name = expr.name;
+
+        return environment -> {
+            Object value = object.evaluate(environment);
+
+            if (value instanceof ClosureInstance) return ((ClosureInstance) value).get(name);
+
+            throw new RuntimeError(name, "Only instances have properties.");
+        };
+    }
+
+    @Override
+    public ExpressionNode visitGroupingASTExpression(ASTExpression.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public ExpressionNode visitLiteralASTExpression(ASTExpression.Literal expr) {
+        Object value = expr.value;
+
+        return environment -> value;
+    }
+
+    @Override
+    public ExpressionNode visitSetASTExpression(ASTExpression.Set expr) {
+        ExpressionNode object = compile(expr.object);
+        ExpressionNode value = compile(expr.value);
+
+        Token name = expr.name;
+
+        return environment -> {
+            Object instance = object.evaluate(environment);
+
+            if (!(instance instanceof ClosureInstance)) {
+                throw new RuntimeError(name, "Only instances have fields.");
+            }
+
+            Object result = value.evaluate(environment);
+
+            ((ClosureInstance) instance).set(name, result);
+
+            return result;
+        };
+    }
+
+    @Override
+    public ExpressionNode visitSuperASTExpression(ASTExpression.Super expr) {
+        int depth = expr.depth;
+        int slot = expr.slot;
+
+        Token method = expr.method;
+
+        return environment -> {
+            // "this" is the only variable of the scope right inside the one holding "super"
+            Environment thisScope = environment.ancestor(depth - 1);
+
+            ClosureInstance object = (ClosureInstance) thisScope.getAt(0, 0);
+
+            ClosureClass superclass = (ClosureClass) thisScope.enclosing.getAt(0, slot);
+
+            ClosureFunction function = superclass.findMethod(method.symbol);
+
+            if (function == null) {
+                throw new RuntimeError(method, "Undefined property '" + method.lexeme + "'.");
+            }
+
+            return function.bind(object);
+        };
+    }
+
+    @Override
+    public ExpressionNode visitThisASTExpression(ASTExpression.This expr) {
+        return variable(expr.keyword, expr.depth, expr.slot);
+    }
+
+    @Override
+    public ExpressionNode visitUnaryASTExpression(ASTExpression.Unary expr) {
+        ExpressionNode right = compile(expr.right);
+
+        return switch (expr.operator.type) {
+            case BANG -> environment -> !isTruthy(right.evaluate(environment));
+
+            case MINUS -> environment -> DoubleCache.box(-(double) right.evaluate(environment));
+
+            default -> environment -> {
+                right.evaluate(environment);
+
+                return null;
+            };
+        };
+    }
+
+    @Override
+    public ExpressionNode visitVariableASTExpression(ASTExpression.Variable expr) {
+        return variable(expr.name, expr.depth, expr.slot);
+    }
+
+    private ExpressionNode variable(Token name, int depth, int slot) {
+        if (depth == Environment.GLOBAL) {
+            Environment globals = engine.globals;
+
+            return environment -> globals.get(name);
+        }
+
+        if (depth == 0) return environment -> environment.getAt(0, slot);
+
+        return environment -> environment.getAt(depth, slot);
+    }
+
+    @Override
+    public ExpressionNode visitAssignASTExpression(ASTExpression.Assign expr) {
+        ExpressionNode value = compile(expr.value);
+
+        Token name = expr.name;
+        int depth = expr.depth;
+        int slot = expr.slot;
+
+        if (depth == Environment.GLOBAL) {
+            Environment globals = engine.globals;
+
+            return environment -> {
+                Object result = value.evaluate(environment);
+
+                globals.assign(name, result);
+
+                return result;
+            };
+        }
+
+        return environment -> {
+            Object result = value.evaluate(environment);
+
+            environment.assignAt(depth, slot, result);
+
+            return result;
+        };
+    }
+
+    @Override
+    public ExpressionNode visitLogicalASTExpression(ASTExpression.Logical expr) {
+        ExpressionNode left = compile(expr.left);
+        ExpressionNode right = compile(expr.right);
+
+        return switch (expr.operator.type) {
+            case OR -> environment -> {
+                Object value = left.evaluate(environment);
+
+                return isTruthy(value) ? value : right.evaluate(environment);
+            };
+
+            default -> environment -> {
+                Object value = left.evaluate(environment);
+
+                return isTruthy(value) ? right.evaluate(environment) : value;
+            };
+        };
+    }
+
+    // memoized expressions read nothing that changes before they are reused, so evaluating them again gives the same value
+    @Override
+    public ExpressionNode visitMemoASTExpression(ASTExpression.Memo expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public StatementNode visitBlockASTStatement(ASTStatement.Block statement) {
+        StatementNode[] statements = compile(statement.statements);
+
+        int size = statement.frameSize;
+
+        if (statement.enclosesFunctions) {
+            return environment -> run(statements, new Environment(environment, size));
+        }
+
+        return environment -> {
+            try {
+                return run(statements, engine.frames.push(environment, size));
+            } finally {
+                engine.frames.pop();
+            }
+        };
+    }
+
+    private static Completion run(StatementNode[] statements, Environment environment) {
+        for (StatementNode statement : statements) {
+            Completion completion = statement.execute(environment);
+
+            if (completion != Completion.NORMAL) return completion;
+        }
+
+        return Completion.NORMAL;
+    }
+
+    @Override
+    public StatementNode visitClassASTStatement(ASTStatement.Class statement) {
+        ExpressionNode superclassNode = statement.superclass == null ? null : compile(statement.superclass);
+
+        List<ASTStatement.Function> declarations = statement.methods;
+
+        ClosureFunction.Body[] bodies = new ClosureFunction.Body[declarations.size()];
+
+        for (int i = 0; i < bodies.length; i++) {
+            ASTStatement.Function method = declarations.get(i);
+
+            bodies[i] = body(method, method.name.symbol == ClosureClass.INIT);
+        }
+
+        Token name = statement.name;
+        int slot = statement.slot;
+        Token superclassName = superclassNode == null ? null : statement.superclass.name;
+
+        return environment -> {
+            ClosureClass superclass = null;
+
+            if (superclassNode != null) {
+                Object value = superclassNode.evaluate(environment);
+
+                if (!(value instanceof ClosureClass)) {
+                    throw new RuntimeError(superclassName, "Superclass must be a class.");
+                }
+
+                superclass = (ClosureClass) value;
+            }
+
+            define(environment, name, slot, null);
+
+            Environment closure = environment;
+
+            if (superclass != null) {
+                closure = new Environment(environment, 1);
+                closure.define(0, superclass);
+            }
+
+            SymbolMap<ClosureFunction> methods = new SymbolMap<>();
+
+            for (int i = 0; i < bodies.length; i++) {
+                methods.put(declarations.get(i).name.symbol, new ClosureFunction(engine, bodies[i], closure, null));
+            }
+
+            define(environment, name, slot, new ClosureClass(name.lexeme, superclass, methods));
+
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visitExpressionASTStatement(ASTStatement.Expression statement) {
+        ExpressionNode expression = compile(statement.expression);
+
+        return environment -> {
+            expression.evaluate(environment);
+
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visitFunctionASTStatement(ASTStatement.Function statement) {
+        ClosureFunction.Body body = body(statement, false);
+
+        Token name = statement.name;
+        int slot = statement.slot;
+
+        return environment -> {
+            define(environment, name, slot, new ClosureFunction(engine, body, environment, null));
+
+            return Completion.NORMAL;
+        };
+    }
+
+    private ClosureFunction.Body body(ASTStatement.Function function, boolean isInitializer) {
+        ClosureFunction.Body body = new ClosureFunction.Body(function.name.lexeme, function.params.size(), function.frameSize, function.enclosesFunctions, isInitializer);
+
+        body.statements = compile(function.body);
+
+        return body;
+    }
+
+    @Override
+    public StatementNode visitPrintASTStatement(ASTStatement.Print statement) {
+        ExpressionNode expression = compile(statement.expression);
+
+        return environment -> {
+            System.out.println(stringify(expression.evaluate(environment)));
+
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visitReturnASTStatement(ASTStatement.Return statement) {
+        if (statement.tailCall) return tailCall((ASTExpression.Call) statement.value);
+
+        if (statement.value == null) {
+            return environment -> {
+                engine.returnValue = null;
+
+                return Completion.RETURN;
+            };
+        }
+
+        ExpressionNode value = compile(statement.value);
+
+        return environment -> {
+            engine.returnValue = value.evaluate(environment);
+
+            return Completion.RETURN;
+        };
+    }
+
+    // a call to a Lox function in tail position is left for ClosureFunction.call to run in place of the current one
+    private StatementNode tailCall(ASTExpression.Call expr) {
+        ExpressionNode callee = compile(expr.callee);
+        ExpressionNode[] arguments = compileAll(expr.arguments);
+
+        Token paren = expr.paren;
+        boolean arityChecked = expr.arityChecked;
+
+        return environment -> {
+            Callable function = callable(callee.evaluate(environment), paren);
+
+            Object[] values = arguments(environment, arguments, function, paren, arityChecked);
+
+            if (!(function instanceof ClosureFunction)) {
+                engine.returnValue = function.call(values);
+
+                return Completion.RETURN;
+            }
+
+            engine.tailFunction = (ClosureFunction) function;
+            engine.tailArguments = values;
+
+            return Completion.TAIL_CALL;
+        };
+    }
+
+    @Override
+    public StatementNode visitVarASTStatement(ASTStatement.Var statement) {
+        ExpressionNode initializer = statement.initializer == null ? null : compile(statement.initializer);
+
+        Token name = statement.name;
+        int slot = statement.slot;
+
+        return environment -> {
+            Object value = initializer == null ? null : initializer.evaluate(environment);
+
+            define(environment, name, slot, value);
+
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visitWhileASTStatement(ASTStatement.While statement) {
+        ExpressionNode condition = compile(statement.condition);
+        StatementNode body = compile(statement.body);
+
+        return environment -> {
+            while (isTruthy(condition.evaluate(environment))) {
+                Completion completion = body.execute(environment);
+
+                if (completion != Completion.NORMAL) return completion;
+            }
+
+            return Completion.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visitIfASTStatement(ASTStatement.If statement) {
+        ExpressionNode condition = compile(statement.condition);
+        StatementNode thenBranch = compile(statement.thenBranch);
+
+        if (statement.elseBranch == null) {
+            return environment -> isTruthy(condition.evaluate(environment)) ? thenBranch.execute(environment) : Completion.NORMAL;
+        }
+
+        StatementNode elseBranch = compile(statement.elseBranch);
+
+        return environment -> isTruthy(condition.evaluate(environment)) ? thenBranch.execute(environment) : elseBranch.execute(environment);
+    }
+
+    private void define(Environment environment, Token name, int slot, Object value) {
+        if (slot == Environment.GLOBAL) {
+            engine.globals.define(name, value);
+        } else {
+            environment.define(slot, value);
+        }
+    }
+
+    private static Callable callable(Object callee, Token paren) {
+        if (!(callee instanceof Callable)) {
+            throw new NotCallableError(paren, "Can only call functions and classes.");
+        }
+
+        return (Callable) callee;
+    }
+
+    // evaluated after the callee is known to be callable, the count is checked once they all ran
+    private static Object[] arguments(Environment environment, ExpressionNode[] arguments, Callable function, Token paren, boolean arityChecked) {
+        Object[] values = new Object[arguments.length];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = arguments[i].evaluate(environment);
+        }
+
+        if (!arityChecked && values.length != function.arity()) {
+            throw new RuntimeError(paren, "Expected " + function.arity() + " arguments but got " + values.length + ".");
+        }
+
+        return values;
+    }
+
+    // - and *, two numbers in and a number out
+    private static ExpressionNode arithmetic(ExpressionNode left, ExpressionNode right, Token operator) {
+        boolean subtract = operator.type == TokenType.MINUS;
+
+        return environment -> {
+            Object a = left.evaluate(environment);
+            Object b = right.evaluate(environment);
+
+            checkNumberOperands(operator, a, b);
+
+            return DoubleCache.box(subtract ? (double) a - (double) b : (double) a * (double) b);
+        };
+    }
+
+    // comparison and equality, two numbers or two strings in and a boolean out
+    private static ExpressionNode comparison(ExpressionNode left, ExpressionNode right, Token operator) {
+        TokenType type = operator.type;
+
+        return environment -> {
+            Object a = left.evaluate(environment);
+            Object b = right.evaluate(environment);
+
+            if (a instanceof Double && b instanceof Double) return compare(type, (double) a, (double) b);
+
+            // strings are compared through their order, against zero
+            return compare(type, compareStrings(a, b, operator), 0);
+        };
+    }
+
+    private static boolean compare(TokenType type, double left, double right) {
+        return switch (type) {
+            case GREATER -> left > right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            case LESS_EQUAL -> left <= right;
+            case EQUAL_EQUAL -> left == right;
+            default -> left != right;
+        };
+    }
+
+    private static Object add(Object left, Object right, Token operator) {
+        if (left instanceof Double && right instanceof Double) return DoubleCache.box((double) left + (double) right);
+
+        if (left instanceof String && right instanceof String) return left + (String) right;
+
+        if (left instanceof String || right instanceof String) return stringify(left) + stringify(right);
+
+        throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+    }
+
+    private static Object divide(Object left, Object right, Token operator) {
+        if (left instanceof Double && right instanceof Double) {
+            if ((double) left == 0.0 || (double) right == 0.0) {
+                throw new ZeroDivisionError(operator, "Can not Divide by zero.");
+            }
+
+            return DoubleCache.box((double) left / (double) right);
+        }
+
+        throw new RuntimeError(operator, "Operands must be two numbers.");
+    }
+
+    // the numbers are compared by the caller
+    private static int compareStrings(Object left, Object right, Token operator) {
+        if (left instanceof String && right instanceof String) return ((String) left).compareTo((String) right);
+
+        throw new RuntimeError(operator, "Operands must be numbers or two strings.");
+    }
+
+    private static void checkNumberOperands(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return;
+
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
+
+    private static boolean isTruthy(Object object) {
+        if (object == null) return false;
+
+        if (object instanceof Boolean) return (boolean) object;
+
+        return true;
+    }
+
+    private static String stringify(Object object) {
+        if (object == null) return "nil";
+
+        if (object instanceof Double) {
+            String text = object.toString();
+
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+
+            return text;
+        }
+
+        return object.toString();
+    }
+}
@@ -0,0 +1,8 @@
+package com.yassenhigazi.jlox.Closures;
+
+import com.yassenhigazi.jlox.Environment.Environment;
+
+@FunctionalInterface
+interface StatementNode {
+    Completion execute(Environment environment);
+}
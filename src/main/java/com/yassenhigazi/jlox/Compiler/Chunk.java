@@ -0,0 +1,87 @@
+package com.yassenhigazi.jlox.Compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Chunk {
+    // constant operands are two bytes wide
+    static final int MAX_CONSTANTS = 0x10000;
+
+    private byte[] code = new byte[16];
+    private int count = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndexes = new HashMap<>();
+    private Object[] constantPool = new Object[0];
+
+    // run-length encoded: lines[i] applies from the offset lineStarts[i] until the next entry
+    private int[] lineStarts = new int[4];
+    private int[] lines = new int[4];
+    private int lineCount = 0;
+
+    void write(int value, int line) {
+        if (count == code.length) code = Arrays.copyOf(code, count * 2);
+
+        if (lineCount == 0 || lines[lineCount - 1] != line) {
+            if (lineCount == lines.length) {
+                lines = Arrays.copyOf(lines, lineCount * 2);
+                lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+            }
+
+            lines[lineCount] = line;
+            lineStarts[lineCount] = count;
+            lineCount++;
+        }
+
+        code[count++] = (byte) value;
+    }
+
+    void patch(int offset, int value) {
+        code[offset] = (byte) value;
+    }
+
+    int addConstant(Object value) {
+        // functions are never shared between call sites, numbers and strings are
+        if (value instanceof Double || value instanceof String) {
+            Integer index = constantIndexes.get(value);
+
+            if (index != null) return index;
+
+            constantIndexes.put(value, constants.size());
+        }
+
+        constants.add(value);
+
+        return constants.size() - 1;
+    }
+
+    void seal() {
+        code = Arrays.copyOf(code, count);
+        constantPool = constants.toArray();
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] getCode() {
+        return code;
+    }
+
+    public Object[] getConstants() {
+        return constantPool;
+    }
+
+    public int getLine(int offset) {
+        int line = 0;
+
+        for (int i = 0; i < lineCount && lineStarts[i] <= offset; i++) {
+            line = lines[i];
+        }
+
+        return line;
+    }
+}
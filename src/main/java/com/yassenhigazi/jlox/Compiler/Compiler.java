@@ -0,0 +1,673 @@
+package com.yassenhigazi.jlox.Compiler;
+
+import com.yassenhigazi.jlox.JLox;
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Scanner.Token;
+import com.yassenhigazi.jlox.Scanner.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lowers a resolved list of statements into bytecode for the {@link com.yassenhigazi.jlox.VM.VM}.
+ * Locals live on the VM stack, so the compiler tracks its own stack slots and upvalues instead of
+ * the environment slots the Resolver assigned for the tree-walking interpreter.
+ */
+public class Compiler implements ASTExpression.Visitor<Void>, ASTStatement.Visitor<Void> {
+    private static final int MAX_SLOTS = 256;
+    private static final int MAX_JUMP = 0xffff;
+
+    private FunctionState current;
+
+    // the last token compiled, its line is recorded for every emitted byte
+    private Token token = new Token(TokenType.EOF, "", null, 1, 0);
+
+    public ObjFunction compile(List<ASTStatement> statements) {
+        current = new FunctionState(null, new ObjFunction(null), FunctionType.SCRIPT);
+
+        for (ASTStatement statement : statements) {
+            compile(statement);
+        }
+
+        return endFunction();
+    }
+
+    private void compile(ASTStatement statement) {
+        statement.accept(this);
+    }
+
+    private void compile(ASTExpression expression) {
+        expression.accept(this);
+    }
+
+    @Override
+    public Void visitBinaryASTExpression(ASTExpression.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        mark(expr.operator);
+
+        switch (expr.operator.type) {
+            case GREATER -> emit(OpCode.GREATER);
+            case GREATER_EQUAL -> emit(OpCode.GREATER_EQUAL);
+            case LESS -> emit(OpCode.LESS);
+            case LESS_EQUAL -> emit(OpCode.LESS_EQUAL);
+            case EQUAL_EQUAL -> emit(OpCode.EQUAL);
+            case BANG_EQUAL -> emit(OpCode.NOT_EQUAL);
+            case MINUS -> emit(OpCode.SUBTRACT);
+            case PLUS -> emit(OpCode.ADD);
+            case SLASH -> emit(OpCode.DIVIDE);
+            case STAR -> emit(OpCode.MULTIPLY);
+            default -> error(expr.operator, "Unknown binary operator.");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallASTExpression(ASTExpression.Call expr) {
+        int argumentCount = expr.arguments.size();
+
+        if (expr.callee instanceof ASTExpression.Get get) {
+            // obj.method(args) invokes the method without materializing a bound method
+            compile(get.object);
+            compileArguments(expr.arguments);
+
+            mark(expr.paren);
+            emitWithShort(OpCode.INVOKE, identifierConstant(get.name));
+            emit(argumentCount);
+
+            return null;
+        }
+
+        if (expr.callee instanceof ASTExpression.Super superExpr) {
+            namedVariable(thisToken(superExpr.keyword));
+            compileArguments(expr.arguments);
+            namedVariable(superExpr.keyword);
+
+            mark(expr.paren);
+            emitWithShort(OpCode.SUPER_INVOKE, identifierConstant(superExpr.method));
+            emit(argumentCount);
+
+            return null;
+        }
+
+        compile(expr.callee);
+        compileArguments(expr.arguments);
+
+        mark(expr.paren);
+        emit(OpCode.CALL);
+        emit(argumentCount);
+
+        return null;
+    }
+
+    @Override
+    public Void visitGetASTExpression(ASTExpression.Get expr) {
+        compile(expr.object);
+
+        mark(expr.name);
+        emitWithShort(OpCode.GET_PROPERTY, identifierConstant(expr.name));
+
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingASTExpression(ASTExpression.Grouping expr) {
+        compile(expr.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralASTExpression(ASTExpression.Literal expr) {
+        if (expr.value == null) {
+            emit(OpCode.NIL);
+        } else if (expr.value instanceof Boolean) {
+            emit((boolean) expr.value ? OpCode.TRUE : OpCode.FALSE);
+        } else {
+            emitWithShort(OpCode.CONSTANT, makeConstant(expr.value, expr.token));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitSetASTExpression(ASTExpression.Set expr) {
+        compile(expr.object);
+        compile(expr.value);
+
+        mark(expr.name);
+        emitWithShort(OpCode.SET_PROPERTY, identifierConstant(expr.name));
+
+        return null;
+    }
+
+    @Override
+    public Void visitSuperASTExpression(ASTExpression.Super expr) {
+        namedVariable(thisToken(expr.keyword));
+        namedVariable(expr.keyword);
+
+        mark(expr.method);
+        emitWithShort(OpCode.GET_SUPER, identifierConstant(expr.method));
+
+        return null;
+    }
+
+    @Override
+    public Void visitThisASTExpression(ASTExpression.This expr) {
+        namedVariable(expr.keyword);
+
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryASTExpression(ASTExpression.Unary expr) {
+        compile(expr.right);
+
+        mark(expr.operator);
+
+        if (expr.operator.type == TokenType.BANG) {
+            emit(OpCode.NOT);
+        } else {
+            emit(OpCode.NEGATE);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitVariableASTExpression(ASTExpression.Variable expr) {
+        namedVariable(expr.name);
+
+        return null;
+    }
+
+    @Override
+    public Void visitAssignASTExpression(ASTExpression.Assign expr) {
+        compile(expr.value);
+
+        mark(expr.name);
+
+        int slot = resolveLocal(current, expr.name.lexeme);
+
+        if (slot != -1) {
+            emit(OpCode.SET_LOCAL);
+            emit(slot);
+        } else if ((slot = resolveUpvalue(current, expr.name)) != -1) {
+            emit(OpCode.SET_UPVALUE);
+            emit(slot);
+        } else {
+            emitWithShort(OpCode.SET_GLOBAL, identifierConstant(expr.name));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalASTExpression(ASTExpression.Logical expr) {
+        compile(expr.left);
+
+        mark(expr.operator);
+
+        if (expr.operator.type == TokenType.OR) {
+            int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+            int endJump = emitJump(OpCode.JUMP);
+
+            patchJump(elseJump);
+            emit(OpCode.POP);
+
+            compile(expr.right);
+
+            patchJump(endJump);
+        } else {
+            int endJump = emitJump(OpCode.JUMP_IF_FALSE);
+
+            emit(OpCode.POP);
+
+            compile(expr.right);
+
+            patchJump(endJump);
+        }
+
+        return null;
+    }
+
+    // the VM computes memoized expressions every time
+    @Override
+    public Void visitMemoASTExpression(ASTExpression.Memo expr) {
+        compile(expr.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBlockASTStatement(ASTStatement.Block statement) {
+        beginScope();
+
+        for (ASTStatement inner : statement.statements) {
+            compile(inner);
+        }
+
+        endScope();
+
+        return null;
+    }
+
+    @Override
+    public Void visitClassASTStatement(ASTStatement.Class classStatement) {
+        mark(classStatement.name);
+
+        emitWithShort(OpCode.CLASS, identifierConstant(classStatement.name));
+        defineVariable(classStatement.name);
+
+        if (classStatement.superclass != null) {
+            namedVariable(classStatement.superclass.name);
+
+            beginScope();
+            addLocal("super", classStatement.superclass.name);
+
+            namedVariable(classStatement.name);
+
+            mark(classStatement.superclass.name);
+            emit(OpCode.INHERIT);
+        }
+
+        namedVariable(classStatement.name);
+
+        for (ASTStatement.Function method : classStatement.methods) {
+            FunctionType type = method.name.lexeme.equals("init") ? FunctionType.INITIALIZER : FunctionType.METHOD;
+
+            function(method, type);
+
+            emitWithShort(OpCode.METHOD, identifierConstant(method.name));
+        }
+
+        emit(OpCode.POP);
+
+        if (classStatement.superclass != null) endScope();
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionASTStatement(ASTStatement.Expression statement) {
+        compile(statement.expression);
+
+        emit(OpCode.POP);
+
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionASTStatement(ASTStatement.Function statement) {
+        // declared before the body so the function can call itself
+        if (current.scopeDepth > 0) addLocal(statement.name.lexeme, statement.name);
+
+        function(statement, FunctionType.FUNCTION);
+
+        if (current.scopeDepth == 0) {
+            emitWithShort(OpCode.DEFINE_GLOBAL, identifierConstant(statement.name));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitPrintASTStatement(ASTStatement.Print statement) {
+        compile(statement.expression);
+
+        emit(OpCode.PRINT);
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnASTStatement(ASTStatement.Return statement) {
+        mark(statement.keyword);
+
+        if (current.type == FunctionType.INITIALIZER) {
+            emit(OpCode.GET_LOCAL);
+            emit(0);
+        } else if (statement.value != null) {
+            compile(statement.value);
+        } else {
+            emit(OpCode.NIL);
+        }
+
+        emit(OpCode.RETURN);
+
+        return null;
+    }
+
+    @Override
+    public Void visitVarASTStatement(ASTStatement.Var statement) {
+        if (statement.initializer != null) {
+            compile(statement.initializer);
+        } else {
+            emit(OpCode.NIL);
+        }
+
+        mark(statement.name);
+
+        // the initializer's value is left on the stack exactly where the new local lives
+        defineVariable(statement.name);
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileASTStatement(ASTStatement.While statement) {
+        int loopStart = currentChunk().size();
+
+        compile(statement.condition);
+
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+
+        emit(OpCode.POP);
+
+        compile(statement.body);
+
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+
+        emit(OpCode.POP);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfASTStatement(ASTStatement.If statement) {
+        compile(statement.condition);
+
+        int thenJump = emitJump(OpCode.JUMP_IF_FALSE);
+
+        emit(OpCode.POP);
+
+        compile(statement.thenBranch);
+
+        int elseJump = emitJump(OpCode.JUMP);
+
+        patchJump(thenJump);
+
+        emit(OpCode.POP);
+
+        if (statement.elseBranch != null) compile(statement.elseBranch);
+
+        patchJump(elseJump);
+
+        return null;
+    }
+
+    private void function(ASTStatement.Function declaration, FunctionType type) {
+        mark(declaration.name);
+
+        ObjFunction function = new ObjFunction(declaration.name.lexeme);
+
+        function.arity = declaration.params.size();
+
+        current = new FunctionState(current, function, type);
+
+        beginScope();
+
+        for (Token param : declaration.params) {
+            addLocal(param.lexeme, param);
+        }
+
+        for (ASTStatement statement : declaration.body) {
+            compile(statement);
+        }
+
+        FunctionState state = current;
+
+        endFunction();
+
+        emitWithShort(OpCode.CLOSURE, makeConstant(function, declaration.name));
+
+        for (Upvalue upvalue : state.upvalues) {
+            emit(upvalue.isLocal ? 1 : 0);
+            emit(upvalue.index);
+        }
+    }
+
+    private ObjFunction endFunction() {
+        if (current.type == FunctionType.INITIALIZER) {
+            emit(OpCode.GET_LOCAL);
+            emit(0);
+        } else {
+            emit(OpCode.NIL);
+        }
+
+        emit(OpCode.RETURN);
+
+        ObjFunction function = current.function;
+
+        function.upvalueCount = current.upvalues.size();
+        function.chunk.seal();
+
+        current = current.enclosing;
+
+        return function;
+    }
+
+    private void compileArguments(List<ASTExpression> arguments) {
+        for (ASTExpression argument : arguments) {
+            compile(argument);
+        }
+    }
+
+    private void namedVariable(Token name) {
+        mark(name);
+
+        int slot = resolveLocal(current, name.lexeme);
+
+        if (slot != -1) {
+            emit(OpCode.GET_LOCAL);
+            emit(slot);
+        } else if ((slot = resolveUpvalue(current, name)) != -1) {
+            emit(OpCode.GET_UPVALUE);
+            emit(slot);
+        } else {
+            emitWithShort(OpCode.GET_GLOBAL, identifierConstant(name));
+        }
+    }
+
+    private void defineVariable(Token name) {
+        if (current.scopeDepth > 0) {
+            addLocal(name.lexeme, name);
+
+            return;
+        }
+
+        emitWithShort(OpCode.DEFINE_GLOBAL, identifierConstant(name));
+    }
+
+    private void addLocal(String name, Token token) {
+        if (current.locals.size() == MAX_SLOTS) {
+            error(token, "Too many local variables in function.");
+
+            return;
+        }
+
+        current.locals.add(new Local(name, current.scopeDepth));
+    }
+
+    private int resolveLocal(FunctionState state, String name) {
+        for (int i = state.locals.size() - 1; i >= 0; i--) {
+            if (state.locals.get(i).name.equals(name)) return i;
+        }
+
+        return -1;
+    }
+
+    private int resolveUpvalue(FunctionState state, Token name) {
+        if (state.enclosing == null) return -1;
+
+        int local = resolveLocal(state.enclosing, name.lexeme);
+
+        if (local != -1) {
+            state.enclosing.locals.get(local).isCaptured = true;
+
+            return addUpvalue(state, local, true, name);
+        }
+
+        int upvalue = resolveUpvalue(state.enclosing, name);
+
+        if (upvalue != -1) return addUpvalue(state, upvalue, false, name);
+
+        return -1;
+    }
+
+    private int addUpvalue(FunctionState state, int index, boolean isLocal, Token name) {
+        for (int i = 0; i < state.upvalues.size(); i++) {
+            Upvalue upvalue = state.upvalues.get(i);
+
+            if (upvalue.index == index && upvalue.isLocal == isLocal) return i;
+        }
+
+        if (state.upvalues.size() == MAX_SLOTS) {
+            error(name, "Too many closure variables in function.");
+
+            return 0;
+        }
+
+        state.upvalues.add(new Upvalue(index, isLocal));
+
+        return state.upvalues.size() - 1;
+    }
+
+    private void beginScope() {
+        current.scopeDepth++;
+    }
+
+    private void endScope() {
+        current.scopeDepth--;
+
+        List<Local> locals = current.locals;
+
+        while (!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+            emit(locals.get(locals.size() - 1).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+
+            locals.remove(locals.size() - 1);
+        }
+    }
+
+    private Token thisToken(Token at) {
+        return new Token(TokenType.THIS, "this", null, at.line, 0);
+    }
+
+    private int identifierConstant(Token name) {
+        return makeConstant(name.lexeme, name);
+    }
+
+    // at is the token the constant comes from, the overflow error is reported there
+    private int makeConstant(Object value, Token at) {
+        // a full pool takes nothing more, its error was reported for the constant that overflowed it
+        if (current.constantsFull) return 0;
+
+        int constant = currentChunk().addConstant(value);
+
+        if (constant >= Chunk.MAX_CONSTANTS) {
+            current.constantsFull = true;
+
+            error(at, "Too many constants in one chunk.");
+
+            return 0;
+        }
+
+        return constant;
+    }
+
+    private Chunk currentChunk() {
+        return current.function.chunk;
+    }
+
+    private void mark(Token token) {
+        this.token = token;
+    }
+
+    private void emit(int value) {
+        currentChunk().write(value, token.line);
+    }
+
+    private void emitWithShort(byte op, int operand) {
+        emit(op);
+        emit((operand >> 8) & 0xff);
+        emit(operand & 0xff);
+    }
+
+    private int emitJump(byte op) {
+        emitWithShort(op, 0xffff);
+
+        return currentChunk().size() - 2;
+    }
+
+    private void patchJump(int offset) {
+        // -2 to adjust for the bytecode for the jump offset itself.
+        int jump = currentChunk().size() - offset - 2;
+
+        if (jump > MAX_JUMP) error(token, "Too much code to jump over.");
+
+        currentChunk().patch(offset, (jump >> 8) & 0xff);
+        currentChunk().patch(offset + 1, jump & 0xff);
+    }
+
+    private void emitLoop(int loopStart) {
+        emit(OpCode.LOOP);
+
+        int offset = currentChunk().size() - loopStart + 2;
+
+        if (offset > MAX_JUMP) error(token, "Loop body too large.");
+
+        emit((offset >> 8) & 0xff);
+        emit(offset & 0xff);
+    }
+
+    private void error(Token token, String message) {
+        JLox.error(token, message);
+    }
+
+    private static class Local {
+        final String name;
+        final int depth;
+        boolean isCaptured = false;
+
+        Local(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+    }
+
+    private static class Upvalue {
+        final int index;
+        final boolean isLocal;
+
+        Upvalue(int index, boolean isLocal) {
+            this.index = index;
+            this.isLocal = isLocal;
+        }
+    }
+
+    private static class FunctionState {
+        final FunctionState enclosing;
+        final ObjFunction function;
+        final FunctionType type;
+        final List<Local> locals = new ArrayList<>();
+        final List<Upvalue> upvalues = new ArrayList<>();
+        int scopeDepth = 0;
+        boolean constantsFull = false;
+
+        FunctionState(FunctionState enclosing, ObjFunction function, FunctionType type) {
+            this.enclosing = enclosing;
+            this.function = function;
+            this.type = type;
+
+            // slot zero holds the receiver in methods and the called function everywhere else
+            boolean hasReceiver = type == FunctionType.METHOD || type == FunctionType.INITIALIZER;
+
+            locals.add(new Local(hasReceiver ? "this" : "", 0));
+        }
+    }
+}
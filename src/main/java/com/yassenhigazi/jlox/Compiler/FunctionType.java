@@ -0,0 +1,8 @@
+package com.yassenhigazi.jlox.Compiler;
+
+enum FunctionType {
+    SCRIPT,
+    FUNCTION,
+    METHOD,
+    INITIALIZER
+}
@@ -0,0 +1,19 @@
+package com.yassenhigazi.jlox.Compiler;
+
+public class ObjFunction {
+    public final String name;
+    public final Chunk chunk = new Chunk();
+    public int arity = 0;
+    public int upvalueCount = 0;
+
+    ObjFunction(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        if (name == null) return "<script>";
+
+        return "<fn " + name + ">";
+    }
+}
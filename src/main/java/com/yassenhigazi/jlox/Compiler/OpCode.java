@@ -0,0 +1,48 @@
+package com.yassenhigazi.jlox.Compiler;
+
+// One byte per instruction, followed by its operands. Operands named "u16" are two bytes, big endian.
+public final class OpCode {
+    public static final byte CONSTANT = 0;       // u16 constant
+    public static final byte NIL = 1;
+    public static final byte TRUE = 2;
+    public static final byte FALSE = 3;
+    public static final byte POP = 4;
+    public static final byte GET_LOCAL = 5;      // u8 slot
+    public static final byte SET_LOCAL = 6;      // u8 slot
+    public static final byte GET_GLOBAL = 7;     // u16 name
+    public static final byte DEFINE_GLOBAL = 8;  // u16 name
+    public static final byte SET_GLOBAL = 9;     // u16 name
+    public static final byte GET_UPVALUE = 10;   // u8 index
+    public static final byte SET_UPVALUE = 11;   // u8 index
+    public static final byte GET_PROPERTY = 12;  // u16 name
+    public static final byte SET_PROPERTY = 13;  // u16 name
+    public static final byte GET_SUPER = 14;     // u16 name
+    public static final byte EQUAL = 15;
+    public static final byte NOT_EQUAL = 16;
+    public static final byte GREATER = 17;
+    public static final byte GREATER_EQUAL = 18;
+    public static final byte LESS = 19;
+    public static final byte LESS_EQUAL = 20;
+    public static final byte ADD = 21;
+    public static final byte SUBTRACT = 22;
+    public static final byte MULTIPLY = 23;
+    public static final byte DIVIDE = 24;
+    public static final byte NOT = 25;
+    public static final byte NEGATE = 26;
+    public static final byte PRINT = 27;
+    public static final byte JUMP = 28;          // u16 forward offset
+    public static final byte JUMP_IF_FALSE = 29; // u16 forward offset
+    public static final byte LOOP = 30;          // u16 backward offset
+    public static final byte CALL = 31;          // u8 argument count
+    public static final byte INVOKE = 32;        // u16 name, u8 argument count
+    public static final byte SUPER_INVOKE = 33;  // u16 name, u8 argument count
+    public static final byte CLOSURE = 34;       // u16 function, then (u8 isLocal, u8 index) per upvalue
+    public static final byte CLOSE_UPVALUE = 35;
+    public static final byte RETURN = 36;
+    public static final byte CLASS = 37;         // u16 name
+    public static final byte INHERIT = 38;
+    public static final byte METHOD = 39;        // u16 name
+
+    private OpCode() {
+    }
+}
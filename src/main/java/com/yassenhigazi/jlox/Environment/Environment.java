@@ -1,33 +1,82 @@
 package com.yassenhigazi.jlox.Environment;
 
 import com.yassenhigazi.jlox.Errors.UndefinedVariableError;
+import com.yassenhigazi.jlox.Scanner.Symbols;
 import com.yassenhigazi.jlox.Scanner.Token;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class Environment {
 
-    public final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    // slot given by the resolver to names that live in the global environment
+    public static final int GLOBAL = -1;
+
+    // only changes when a FrameStack hands the environment out again
+    public Environment enclosing;
+
+    // marks the globals that were never defined, nil is a value like any other
+    private static final Object UNDEFINED = new Object();
+
+    // only the global environment is looked up by name, through the symbol of the name, local scopes are indexed by
+    // the slots the resolver assigned
+    private Object[] values;
+    private Object[] slots;
 
     public Environment() {
         enclosing = null;
+        values = new Object[64];
+        slots = null;
+
+        Arrays.fill(values, UNDEFINED);
+    }
+
+    public Environment(Environment enclosing, int size) {
+        this.enclosing = enclosing;
+        values = null;
+        slots = new Object[size];
     }
 
-    public Environment(Environment enclosing) {
+    void reset(Environment enclosing, int size) {
         this.enclosing = enclosing;
+
+        if (slots.length < size) slots = new Object[size];
+    }
+
+    void clear() {
+        enclosing = null;
+
+        Arrays.fill(slots, null);
     }
 
     public void define(String name, Object value) {
-        values.put(name, value);
+        defineGlobal(Symbols.intern(name), value);
     }
 
-    public Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+    public void define(Token name, Object value) {
+        defineGlobal(name.symbol, value);
     }
 
-    Environment ancestor(int distance) {
+    private void defineGlobal(int symbol, Object value) {
+        if (symbol >= values.length) {
+            int length = values.length;
+
+            values = Arrays.copyOf(values, Math.max(symbol + 1, length * 2));
+
+            Arrays.fill(values, length, values.length, UNDEFINED);
+        }
+
+        values[symbol] = value;
+    }
+
+    public void define(int slot, Object value) {
+        slots[slot] = value;
+    }
+
+    public Object getAt(int distance, int slot) {
+        return ancestor(distance).slots[slot];
+    }
+
+    public Environment ancestor(int distance) {
         Environment environment = this;
 
         for (int i = 0; i < distance; i++) {
@@ -38,30 +87,26 @@ public class Environment {
         return environment;
     }
 
-    public void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    public void assignAt(int distance, int slot, Object value) {
+        ancestor(distance).slots[slot] = value;
     }
 
     public Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
-        }
+        int symbol = name.symbol;
 
-        if (enclosing != null) return enclosing.get(name);
+        if (symbol >= 0 && symbol < values.length && values[symbol] != UNDEFINED) {
+            return values[symbol];
+        }
 
         throw new UndefinedVariableError(name, "Undefined variable '" + name.lexeme + "'.");
     }
 
     public void assign(Token name, Object value) {
 
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
-
-            return;
-        }
+        int symbol = name.symbol;
 
-        if (enclosing != null) {
-            enclosing.assign(name, value);
+        if (symbol >= 0 && symbol < values.length && values[symbol] != UNDEFINED) {
+            values[symbol] = value;
 
             return;
         }
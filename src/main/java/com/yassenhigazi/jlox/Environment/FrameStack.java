@@ -0,0 +1,35 @@
+package com.yassenhigazi.jlox.Environment;
+
+import java.util.Arrays;
+
+/**
+ * Environments for scopes the resolver found no closure can capture. Such an environment is dead once its scope ends,
+ * so instead of leaving it to the garbage collector it goes back on the stack, and the next scope entered at the same
+ * depth runs in it. Every push has to be matched by a pop in the reverse order.
+ */
+public class FrameStack {
+    private Environment[] frames = new Environment[64];
+    private int top = 0;
+
+    public Environment push(Environment enclosing, int size) {
+        if (top == frames.length) frames = Arrays.copyOf(frames, top * 2);
+
+        Environment frame = frames[top];
+
+        if (frame == null) {
+            frame = new Environment(enclosing, size);
+
+            frames[top] = frame;
+        } else {
+            frame.reset(enclosing, size);
+        }
+
+        top++;
+
+        return frame;
+    }
+
+    public void pop() {
+        frames[--top].clear();
+    }
+}
@@ -0,0 +1,8 @@
+package com.yassenhigazi.jlox.Errors;
+
+// thrown by the JIT when a function uses something compiled code doesn't support, the function stays interpreted
+public class NotCompilable extends RuntimeException {
+    public NotCompilable(String reason) {
+        super(reason, null, false, false);
+    }
+}
@@ -0,0 +1,11 @@
+package com.yassenhigazi.jlox.Errors;
+
+// thrown when a subexpression evaluated for a primitive double turns out not to be a number
+public class UnexpectedValue extends RuntimeException {
+    public final Object value;
+
+    public UnexpectedValue(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+}
@@ -0,0 +1,136 @@
+package com.yassenhigazi.jlox.HelperTools;
+
+import com.yassenhigazi.jlox.Closures.ClosureEngine;
+import com.yassenhigazi.jlox.Interpreter.Interpreter;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Parser.Parser;
+import com.yassenhigazi.jlox.Resolver.Resolver;
+import com.yassenhigazi.jlox.Scanner.JLoxScanner;
+import com.yassenhigazi.jlox.Scanner.Source;
+import com.yassenhigazi.jlox.Scanner.TokenType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Runs scripts on the tree-walking interpreter and reports time and heap allocation per run.
+// With --scan only the scanner runs, and the numbers are tokens per second.
+// Usage: Benchmark [iterations] [--jit|--engine=closures|--scan] script...
+public class Benchmark {
+    private static final int WARMUP = 3;
+
+    private static boolean jit = false;
+    private static boolean closures = false;
+    private static boolean scan = false;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = 10;
+        int first = 0;
+
+        if (args.length > 0 && args[0].matches("\\d+")) {
+            iterations = Integer.parseInt(args[0]);
+            first = 1;
+        }
+
+        if (args.length > first && args[first].equals("--jit")) {
+            jit = true;
+            first++;
+        } else if (args.length > first && args[first].equals("--engine=closures")) {
+            closures = true;
+            first++;
+        } else if (args.length > first && args[first].equals("--scan")) {
+            scan = true;
+            first++;
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        PrintStream out = System.out;
+
+        for (int i = first; i < args.length; i++) {
+            if (scan) {
+                scan(Paths.get(args[i]), iterations);
+
+                continue;
+            }
+
+            String source = Files.readString(Paths.get(args[i]), StandardCharsets.UTF_8);
+
+            // the scripts' own output would drown the numbers
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+            for (int run = 0; run < WARMUP; run++) {
+                run(source);
+            }
+
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            for (int run = 0; run < iterations; run++) {
+                run(source);
+            }
+
+            long elapsed = System.nanoTime() - start;
+            bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+            System.setOut(out);
+
+            System.out.printf("%-30s %10.2f ms/run %12.2f MB allocated/run%n",
+                    Paths.get(args[i]).getFileName(), elapsed / 1e6 / iterations, bytes / 1e6 / iterations);
+        }
+    }
+
+    private static void scan(Path path, int iterations) throws IOException {
+        Source source = Source.map(path);
+
+        for (int run = 0; run < WARMUP; run++) {
+            countTokens(source);
+        }
+
+        long tokens = 0;
+        long start = System.nanoTime();
+
+        for (int run = 0; run < iterations; run++) {
+            tokens += countTokens(source);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-30s %10.2f ms/run %12.2f M tokens/s%n",
+                path.getFileName(), elapsed / 1e6 / iterations, tokens / (elapsed / 1e9) / 1e6);
+    }
+
+    private static long countTokens(Source source) {
+        JLoxScanner scanner = new JLoxScanner(source);
+
+        long tokens = 0;
+
+        while (scanner.nextToken().type != TokenType.EOF) tokens++;
+
+        return tokens;
+    }
+
+    private static void run(String source) {
+        List<ASTStatement> statements = new Parser(new JLoxScanner(source)).parse();
+
+        new Resolver().resolve(statements);
+
+        if (closures) {
+            new ClosureEngine().interpret(statements);
+
+            return;
+        }
+
+        Interpreter interpreter = new Interpreter();
+
+        if (jit) interpreter.enableJit(false);
+
+        interpreter.interpret(statements);
+    }
+}
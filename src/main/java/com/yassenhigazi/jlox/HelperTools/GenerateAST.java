@@ -13,29 +13,30 @@ public class GenerateAST {
         String outputDir = "./src/main/java/com/yassenhigazi/jlox/Parser";
 
         defineAst(outputDir, "ASTExpression", Arrays.asList(
-                "Binary   : ASTExpression left, Token operator, ASTExpression right",
-                "Call     : ASTExpression callee, Token paren, List<ASTExpression> arguments",
-                "Get      : ASTExpression object, Token name",
+                "Binary   : ASTExpression left, Token operator, ASTExpression right : Specialization specialization = Specialization.UNINITIALIZED",
+                "Call     : ASTExpression callee, Token paren, List<ASTExpression> arguments : boolean arityChecked",
+                "Get      : ASTExpression object, Token name : InlineCache cache",
                 "Grouping : ASTExpression expression",
-                "Literal  : Object value",
-                "Set      : ASTExpression object, Token name, ASTExpression value",
-                "Super    : Token keyword, Token method",
-                "This     : Token keyword",
-                "Unary    : Token operator, ASTExpression right",
-                "Variable : Token name",
-                "Assign   : Token name, ASTExpression value",
-                "Logical  : ASTExpression left, Token operator, ASTExpression right"
+                "Literal  : Object value, Token token",
+                "Set      : ASTExpression object, Token name, ASTExpression value : InlineCache cache",
+                "Super    : Token keyword, Token method : int depth, int slot, SuperCache cache",
+                "This     : Token keyword : int depth, int slot",
+                "Unary    : Token operator, ASTExpression right : Specialization specialization = Specialization.UNINITIALIZED",
+                "Variable : Token name : int depth, int slot",
+                "Assign   : Token name, ASTExpression value : int depth, int slot",
+                "Logical  : ASTExpression left, Token operator, ASTExpression right",
+                "Memo     : ASTExpression expression : ASTStatement.While loop, ASTExpression.Memo source, Object value, long entry"
         ));
 
         defineAst(outputDir, "ASTStatement", Arrays.asList(
-                "Block      : List<ASTStatement> statements",
-                "Class      : Token name, ASTExpression.Variable superclass, List<ASTStatement.Function> methods",
+                "Block      : List<ASTStatement> statements : int frameSize, boolean enclosesFunctions",
+                "Class      : Token name, ASTExpression.Variable superclass, List<ASTStatement.Function> methods : int slot",
                 "Expression : ASTExpression expression",
-                "Function   : Token name, List<Token> params, List<ASTStatement> body",
+                "Function   : Token name, List<Token> params, List<ASTStatement> body : int slot, int frameSize, boolean enclosesFunctions, int invocations, int backEdges, boolean queued, volatile CompiledFunction compiled",
                 "Print      : ASTExpression expression",
-                "Return     : Token keyword, ASTExpression value",
-                "Var        : Token name, ASTExpression initializer",
-                "While      : ASTExpression condition, ASTStatement body",
+                "Return     : Token keyword, ASTExpression value : boolean tailCall",
+                "Var        : Token name, ASTExpression initializer : int slot",
+                "While      : ASTExpression condition, ASTStatement body : long entry",
                 "If         : ASTExpression condition, ASTStatement thenBranch, ASTStatement elseBranch"
 
         ));
@@ -47,6 +48,19 @@ public class GenerateAST {
 
         writer.println("package com.yassenhigazi.jlox.Parser;");
         writer.println();
+
+        if (types.stream().anyMatch(type -> type.contains("InlineCache"))) {
+            writer.println("import com.yassenhigazi.jlox.Interpreter.InlineCache;");
+        }
+
+        if (types.stream().anyMatch(type -> type.contains("SuperCache"))) {
+            writer.println("import com.yassenhigazi.jlox.Interpreter.SuperCache;");
+        }
+
+        if (types.stream().anyMatch(type -> type.contains("CompiledFunction"))) {
+            writer.println("import com.yassenhigazi.jlox.Interpreter.CompiledFunction;");
+        }
+
         writer.println("import com.yassenhigazi.jlox.Scanner.Token;");
         writer.println("import java.util.List;");
         writer.println();
@@ -58,7 +72,11 @@ public class GenerateAST {
         for (String type : types) {
             String className = type.split(":")[0].trim();
             String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
+
+            // an optional third part lists the mutable fields filled in by the Resolver and the Interpreter
+            String resolvedFields = type.split(":").length > 2 ? type.split(":")[2].trim() : null;
+
+            defineType(writer, baseName, className, fields, resolvedFields);
         }
 
         writer.println();
@@ -79,7 +97,7 @@ public class GenerateAST {
         writer.println("  }");
     }
 
-    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
+    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList, String resolvedFieldList) {
         writer.println("  public static class " + className + " extends " + baseName + " {");
 
         // Constructor.
@@ -109,6 +127,12 @@ public class GenerateAST {
             writer.println("    public final " + field + ";");
         }
 
+        if (resolvedFieldList != null) {
+            for (String field : resolvedFieldList.split(", ")) {
+                writer.println("    public " + field + ";");
+            }
+        }
+
         writer.println("  }");
     }
 
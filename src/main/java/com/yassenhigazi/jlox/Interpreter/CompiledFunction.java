@@ -0,0 +1,14 @@
+package com.yassenhigazi.jlox.Interpreter;
+
+import com.yassenhigazi.jlox.Environment.Environment;
+
+/**
+ * The body of a Lox function compiled by the JIT. It is run with the frame the caller already filled with the
+ * arguments, and returns the value of the function.
+ */
+public interface CompiledFunction {
+    // returned in place of a value when the body ended in a call to a Lox function, which the caller then runs
+    Object TAIL_CALL = new Object();
+
+    Object run(Interpreter interpreter, Environment frame);
+}
@@ -0,0 +1,10 @@
+package com.yassenhigazi.jlox.Interpreter;
+
+// how a statement finished, a return unwinds the enclosing statements by handing RETURN back up to the function call
+enum Completion {
+    NORMAL,
+    RETURN,
+
+    // a return whose call is left for the function to run, see Interpreter.tailCall
+    TAIL_CALL
+}
@@ -0,0 +1,64 @@
+package com.yassenhigazi.jlox.Interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Remembers, for a single property get or set site, what the property name resolved to on each receiver shape seen there.
+ * An entry holds either the slot of the field, or the method the name resolved to, and for set sites that add the field
+ * the shape the instance moves to. Shapes never change, so an entry never goes stale: an instance that shadows a method
+ * with a field moves to another shape. The cache keeps up to POLYMORPHIC_LIMIT shapes, past that the site is megamorphic
+ * and always takes the uncached lookup.
+ */
+public class InlineCache {
+    private static final int POLYMORPHIC_LIMIT = 4;
+
+    private final Shape[] shapes = new Shape[POLYMORPHIC_LIMIT];
+    private final int[] slots = new int[POLYMORPHIC_LIMIT];
+    private final LoxFunction[] methods = new LoxFunction[POLYMORPHIC_LIMIT];
+    private final Shape[] transitions = new Shape[POLYMORPHIC_LIMIT];
+    private int size = 0;
+    private boolean megamorphic = false;
+
+    // returns the entry for the shape, or -1 on a miss
+    int find(Shape shape) {
+        for (int i = 0; i < size; i++) {
+            if (shapes[i] == shape) return i;
+        }
+
+        return -1;
+    }
+
+    int slot(int entry) {
+        return slots[entry];
+    }
+
+    LoxFunction method(int entry) {
+        return methods[entry];
+    }
+
+    Shape transition(int entry) {
+        return transitions[entry];
+    }
+
+    void add(Shape shape, int slot, LoxFunction method, Shape transition) {
+        if (megamorphic) return;
+
+        if (size == POLYMORPHIC_LIMIT) {
+            megamorphic = true;
+            size = 0;
+
+            Arrays.fill(shapes, null);
+            Arrays.fill(methods, null);
+            Arrays.fill(transitions, null);
+
+            return;
+        }
+
+        shapes[size] = shape;
+        slots[size] = slot;
+        methods[size] = method;
+        transitions[size] = transition;
+
+        size++;
+    }
+}
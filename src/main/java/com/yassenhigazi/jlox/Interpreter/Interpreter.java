@@ -1,27 +1,53 @@
 package com.yassenhigazi.jlox.Interpreter;
 
 import com.yassenhigazi.jlox.Environment.Environment;
+import com.yassenhigazi.jlox.Environment.FrameStack;
 import com.yassenhigazi.jlox.Errors.NotCallableError;
-import com.yassenhigazi.jlox.Errors.Return;
 import com.yassenhigazi.jlox.Errors.RuntimeError;
+import com.yassenhigazi.jlox.Errors.UnexpectedValue;
 import com.yassenhigazi.jlox.Errors.ZeroDivisionError;
+import com.yassenhigazi.jlox.JIT.JIT;
 import com.yassenhigazi.jlox.JLox;
 import com.yassenhigazi.jlox.Parser.ASTExpression;
 import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Parser.Specialization;
 import com.yassenhigazi.jlox.Scanner.Token;
 import com.yassenhigazi.jlox.Scanner.TokenType;
+import com.yassenhigazi.jlox.Utils.DoubleCache;
+import com.yassenhigazi.jlox.Utils.SymbolMap;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.Visitor<Void> {
+public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.Visitor<Completion> {
 
     final Environment globals = new Environment();
-    private final Map<ASTExpression, Integer> locals = new HashMap<>();
     private Environment environment = globals;
 
+    // environments of functions and blocks that no closure captures, reused from one call to the next
+    final FrameStack frames = new FrameStack();
+
+    // the value of the last executed return statement, read by the function that returns it
+    Object returnValue;
+
+    // counts the times any while loop was entered, so each run of a loop gets its own entry
+    private long loopEntries = 0;
+
+    // the call a return in tail position left for the function to run
+    LoxFunction tailFunction;
+    LoxInstance tailReceiver;
+    List<Object> tailArguments;
+
+    // the compiler for hot functions, null unless it was turned on
+    JIT jit;
+
+    // the function whose loop iterations are being counted for the JIT, null when nothing is
+    ASTStatement.Function profiled;
+
+    public void enableJit(boolean debug) {
+        jit = new JIT(debug);
+    }
+
     public void interpret(List<ASTStatement> statements) {
         globals.define("clock", new ClockMethod());
 
@@ -36,9 +62,220 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
 
     @Override
     public Object visitBinaryASTExpression(ASTExpression.Binary expr) {
+        switch (expr.specialization) {
+            case ADD_NUMBERS:
+            case SUBTRACT_NUMBERS:
+            case MULTIPLY_NUMBERS:
+            case DIVIDE_NUMBERS:
+                // numeric operands flow as primitives, only the result of the outermost operator gets boxed
+                try {
+                    return DoubleCache.box(arithmetic(expr));
+                } catch (UnexpectedValue unexpected) {
+                    return unexpected.value;
+                }
+
+            case GREATER_NUMBERS:
+            case GREATER_EQUAL_NUMBERS:
+            case LESS_NUMBERS:
+            case LESS_EQUAL_NUMBERS:
+            case EQUAL_NUMBERS:
+            case NOT_EQUAL_NUMBERS:
+                return compareNumbers(expr);
+        }
+
         Object left = evaluate(expr.left);
         Object right = evaluate(expr.right);
 
+        // each case guards the operand types its specialization assumed, a miss falls through to the generic path
+        switch (expr.specialization) {
+            case CONCAT_STRINGS:
+                if (left instanceof String && right instanceof String) return (String) left + right;
+                break;
+
+            case CONCAT_MIXED:
+                if (left instanceof String || right instanceof String) return stringify(left) + stringify(right);
+                break;
+
+            case GREATER_STRINGS:
+                if (left instanceof String && right instanceof String) return ((String) left).compareTo((String) right) > 0;
+                break;
+
+            case GREATER_EQUAL_STRINGS:
+                if (left instanceof String && right instanceof String) return ((String) left).compareTo((String) right) >= 0;
+                break;
+
+            case LESS_STRINGS:
+                if (left instanceof String && right instanceof String) return ((String) left).compareTo((String) right) < 0;
+                break;
+
+            case LESS_EQUAL_STRINGS:
+                if (left instanceof String && right instanceof String) return ((String) left).compareTo((String) right) <= 0;
+                break;
+
+            case EQUAL_STRINGS:
+                if (left instanceof String && right instanceof String) return left.equals(right);
+                break;
+
+            case NOT_EQUAL_STRINGS:
+                if (left instanceof String && right instanceof String) return !left.equals(right);
+                break;
+
+            case UNINITIALIZED:
+                expr.specialization = specialize(expr.operator.type, left, right);
+
+                return binary(expr, left, right);
+
+            case GENERIC:
+                return binary(expr, left, right);
+        }
+
+        return despecialize(expr, left, right);
+    }
+
+    // the site saw operand types its specialization doesn't handle, stop guessing
+    private Object despecialize(ASTExpression.Binary expr, Object left, Object right) {
+        expr.specialization = Specialization.GENERIC;
+
+        return binary(expr, left, right);
+    }
+
+    private double evaluateDouble(ASTExpression expr) {
+        if (expr instanceof ASTExpression.Binary binary) {
+            switch (binary.specialization) {
+                case ADD_NUMBERS:
+                case SUBTRACT_NUMBERS:
+                case MULTIPLY_NUMBERS:
+                case DIVIDE_NUMBERS:
+                    return arithmetic(binary);
+            }
+        } else if (expr instanceof ASTExpression.Unary unary && unary.specialization == Specialization.NEGATE_NUMBER) {
+            return negate(unary);
+        } else if (expr instanceof ASTExpression.Grouping grouping) {
+            return evaluateDouble(grouping.expression);
+        }
+
+        return expectDouble(evaluate(expr));
+    }
+
+    private double expectDouble(Object value) {
+        if (value instanceof Double) return (double) value;
+
+        throw new UnexpectedValue(value);
+    }
+
+    private double arithmetic(ASTExpression.Binary expr) {
+        // read once, a recursive call may despecialize the node while its operands are evaluated
+        Specialization specialization = expr.specialization;
+
+        double left;
+        double right;
+
+        try {
+            left = evaluateDouble(expr.left);
+        } catch (UnexpectedValue unexpected) {
+            return expectDouble(despecialize(expr, unexpected.value, evaluate(expr.right)));
+        }
+
+        try {
+            right = evaluateDouble(expr.right);
+        } catch (UnexpectedValue unexpected) {
+            return expectDouble(despecialize(expr, left, unexpected.value));
+        }
+
+        switch (specialization) {
+            case ADD_NUMBERS:
+                return left + right;
+
+            case SUBTRACT_NUMBERS:
+                return left - right;
+
+            case MULTIPLY_NUMBERS:
+                return left * right;
+
+            default:
+                if (left == 0.0 || right == 0.0)
+                    throw new ZeroDivisionError(expr.operator, "Can not Divide by zero.");
+
+                return left / right;
+        }
+    }
+
+    private Object compareNumbers(ASTExpression.Binary expr) {
+        Specialization specialization = expr.specialization;
+
+        double left;
+        double right;
+
+        try {
+            left = evaluateDouble(expr.left);
+        } catch (UnexpectedValue unexpected) {
+            return despecialize(expr, unexpected.value, evaluate(expr.right));
+        }
+
+        try {
+            right = evaluateDouble(expr.right);
+        } catch (UnexpectedValue unexpected) {
+            return despecialize(expr, left, unexpected.value);
+        }
+
+        return switch (specialization) {
+            case GREATER_NUMBERS -> left > right;
+            case GREATER_EQUAL_NUMBERS -> left >= right;
+            case LESS_NUMBERS -> left < right;
+            case LESS_EQUAL_NUMBERS -> left <= right;
+            case EQUAL_NUMBERS -> left == right;
+            default -> left != right;
+        };
+    }
+
+    private double negate(ASTExpression.Unary expr) {
+        try {
+            return -evaluateDouble(expr.right);
+        } catch (UnexpectedValue unexpected) {
+            expr.specialization = Specialization.GENERIC;
+
+            return expectDouble(unary(expr, unexpected.value));
+        }
+    }
+
+    private Specialization specialize(TokenType operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            return switch (operator) {
+                case PLUS -> Specialization.ADD_NUMBERS;
+                case MINUS -> Specialization.SUBTRACT_NUMBERS;
+                case STAR -> Specialization.MULTIPLY_NUMBERS;
+                case SLASH -> Specialization.DIVIDE_NUMBERS;
+                case GREATER -> Specialization.GREATER_NUMBERS;
+                case GREATER_EQUAL -> Specialization.GREATER_EQUAL_NUMBERS;
+                case LESS -> Specialization.LESS_NUMBERS;
+                case LESS_EQUAL -> Specialization.LESS_EQUAL_NUMBERS;
+                case EQUAL_EQUAL -> Specialization.EQUAL_NUMBERS;
+                case BANG_EQUAL -> Specialization.NOT_EQUAL_NUMBERS;
+                default -> Specialization.GENERIC;
+            };
+        }
+
+        if (left instanceof String && right instanceof String) {
+            return switch (operator) {
+                case PLUS -> Specialization.CONCAT_STRINGS;
+                case GREATER -> Specialization.GREATER_STRINGS;
+                case GREATER_EQUAL -> Specialization.GREATER_EQUAL_STRINGS;
+                case LESS -> Specialization.LESS_STRINGS;
+                case LESS_EQUAL -> Specialization.LESS_EQUAL_STRINGS;
+                case EQUAL_EQUAL -> Specialization.EQUAL_STRINGS;
+                case BANG_EQUAL -> Specialization.NOT_EQUAL_STRINGS;
+                default -> Specialization.GENERIC;
+            };
+        }
+
+        if (operator == TokenType.PLUS && (left instanceof String || right instanceof String)) {
+            return Specialization.CONCAT_MIXED;
+        }
+
+        return Specialization.GENERIC;
+    }
+
+    Object binary(ASTExpression.Binary expr, Object left, Object right) {
         switch (expr.operator.type) {
             case GREATER:
                 if (left instanceof Double && right instanceof Double) {
@@ -147,26 +384,184 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
 
     @Override
     public Object visitCallASTExpression(ASTExpression.Call expr) {
-        Object callee = evaluate(expr.callee);
+        if (expr.callee instanceof ASTExpression.Get) return invoke(expr, (ASTExpression.Get) expr.callee);
+
+        if (expr.callee instanceof ASTExpression.Super) return invoke(expr, (ASTExpression.Super) expr.callee);
+
+        return call(expr, evaluate(expr.callee));
+    }
+
+    // calls a method straight on its receiver, a bound method is only made when the name turns out to be a field
+    private Object invoke(ASTExpression.Call expr, ASTExpression.Get get) {
+        LoxInstance instance = receiverOf(get);
+
+        LoxFunction method = instance.method(get.name, get.cache);
+
+        if (method == null) return call(expr, instance.get(get.name, get.cache));
+
+        return invoke(expr, method, instance);
+    }
+
+    // a super call runs the superclass method on "this" without binding it first
+    private Object invoke(ASTExpression.Call expr, ASTExpression.Super superExpr) {
+        // "this" is the only variable of the scope right inside the one holding "super", so one walk finds both
+        Environment thisScope = environment.ancestor(superExpr.depth - 1);
+
+        LoxInstance instance = (LoxInstance) thisScope.getAt(0, 0);
+
+        LoxFunction method = superMethod(superExpr, thisScope);
+
+        return invoke(expr, method, instance);
+    }
+
+    private Object invoke(ASTExpression.Call expr, LoxFunction method, LoxInstance instance) {
+        List<ASTExpression> arguments = expr.arguments;
+
+        switch (arguments.size()) {
+            case 0: {
+                checkArity(expr, method);
+
+                return method.invoke0(this, instance);
+            }
+
+            case 1: {
+                Object a = evaluate(arguments.get(0));
+
+                checkArity(expr, method);
+
+                return method.invoke1(this, instance, a);
+            }
+
+            case 2: {
+                Object a = evaluate(arguments.get(0));
+                Object b = evaluate(arguments.get(1));
+
+                checkArity(expr, method);
+
+                return method.invoke2(this, instance, a, b);
+            }
+
+            case 3: {
+                Object a = evaluate(arguments.get(0));
+                Object b = evaluate(arguments.get(1));
+                Object c = evaluate(arguments.get(2));
+
+                checkArity(expr, method);
+
+                return method.invoke3(this, instance, a, b, c);
+            }
+
+            case 4: {
+                Object a = evaluate(arguments.get(0));
+                Object b = evaluate(arguments.get(1));
+                Object c = evaluate(arguments.get(2));
+                Object d = evaluate(arguments.get(3));
+
+                checkArity(expr, method);
+
+                return method.invoke4(this, instance, a, b, c, d);
+            }
+
+            default:
+                return method.invoke(this, instance, arguments(expr, method));
+        }
+    }
+
+    // evaluates the object of a get that is being called, and makes sure the site has its cache
+    private LoxInstance receiverOf(ASTExpression.Get get) {
+        Object object = evaluate(get.object);
 
+        if (!(object instanceof LoxInstance)) {
+            throw new RuntimeError(get.name, "Only instances have properties.");
+        }
+
+        if (get.cache == null) get.cache = new InlineCache();
+
+        return (LoxInstance) object;
+    }
+
+    private Object call(ASTExpression.Call expr, Object callee) {
         if (!(callee instanceof LoxCallable)) {
             throw new NotCallableError(expr.paren, "Can only call functions and classes.");
         }
 
-        List<Object> arguments = new ArrayList<>();
+        //noinspection PatternVariableCanBeUsed
+        LoxCallable function = (LoxCallable) callee;
+
+        List<ASTExpression> arguments = expr.arguments;
+
+        // calls with up to four arguments hand them over one by one, without building a list
+        switch (arguments.size()) {
+            case 0: {
+                checkArity(expr, function);
+
+                return function.call0(this);
+            }
+
+            case 1: {
+                Object a = evaluate(arguments.get(0));
+
+                checkArity(expr, function);
+
+                return function.call1(this, a);
+            }
+
+            case 2: {
+                Object a = evaluate(arguments.get(0));
+                Object b = evaluate(arguments.get(1));
+
+                checkArity(expr, function);
+
+                return function.call2(this, a, b);
+            }
+
+            case 3: {
+                Object a = evaluate(arguments.get(0));
+                Object b = evaluate(arguments.get(1));
+                Object c = evaluate(arguments.get(2));
+
+                checkArity(expr, function);
+
+                return function.call3(this, a, b, c);
+            }
+
+            case 4: {
+                Object a = evaluate(arguments.get(0));
+                Object b = evaluate(arguments.get(1));
+                Object c = evaluate(arguments.get(2));
+                Object d = evaluate(arguments.get(3));
+
+                checkArity(expr, function);
+
+                return function.call4(this, a, b, c, d);
+            }
+
+            default:
+                return function.call(this, arguments(expr, function));
+        }
+    }
+
+    private List<Object> arguments(ASTExpression.Call expr, LoxCallable function) {
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
 
         for (ASTExpression argument : expr.arguments) {
             arguments.add(evaluate(argument));
         }
 
-        //noinspection PatternVariableCanBeUsed
-        LoxCallable function = (LoxCallable) callee;
+        checkArity(expr, function);
 
-        if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
-        }
+        return arguments;
+    }
+
+    // the resolver already matched the arguments against the parameters of the local function the call names
+    void checkArity(ASTExpression.Call expr, LoxCallable function) {
+        if (expr.arityChecked) return;
 
-        return function.call(this, arguments);
+        int count = expr.arguments.size();
+
+        if (count != function.arity()) {
+            throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + count + ".");
+        }
     }
 
     @Override
@@ -174,7 +569,9 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
         Object object = evaluate(expr.object);
 
         if (object instanceof LoxInstance) {
-            return ((LoxInstance) object).get(expr.name);
+            if (expr.cache == null) expr.cache = new InlineCache();
+
+            return ((LoxInstance) object).get(expr.name, expr.cache);
         }
 
         throw new RuntimeError(expr.name, "Only instances have properties.");
@@ -200,37 +597,65 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
 
         Object value = evaluate(expr.value);
 
-        ((LoxInstance) object).set(expr.name, value);
+        if (expr.cache == null) expr.cache = new InlineCache();
+
+        ((LoxInstance) object).set(expr.name, value, expr.cache);
 
         return value;
     }
 
     @Override
     public Object visitSuperASTExpression(ASTExpression.Super expr) {
-        int distance = locals.get(expr);
+        // "this" is the only variable of the scope right inside the one holding "super", so one walk finds both
+        Environment thisScope = environment.ancestor(expr.depth - 1);
+
+        LoxInstance object = (LoxInstance) thisScope.getAt(0, 0);
 
-        LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
+        return superMethod(expr, thisScope).bind(object);
+    }
+
+    // the method a super site names, looked up once per superclass the site sees
+    private LoxFunction superMethod(ASTExpression.Super expr, Environment thisScope) {
+        LoxClass superclass = (LoxClass) thisScope.enclosing.getAt(0, expr.slot);
 
-        LoxInstance object = (LoxInstance) environment.getAt(distance - 1, "this");
+        if (expr.cache == null) expr.cache = new SuperCache();
 
-        LoxFunction method = superclass.findMethod(expr.method.lexeme);
+        LoxFunction method = expr.cache.find(superclass, expr.method.symbol);
 
         if (method == null) {
             throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
         }
 
-        return method.bind(object);
+        return method;
     }
 
     @Override
     public Object visitThisASTExpression(ASTExpression.This expr) {
-        return lookUpVariable(expr.keyword, expr);
+        return lookUpVariable(expr.keyword, expr.depth, expr.slot);
     }
 
     @Override
     public Object visitUnaryASTExpression(ASTExpression.Unary expr) {
+        if (expr.specialization == Specialization.NEGATE_NUMBER) {
+            try {
+                return DoubleCache.box(negate(expr));
+            } catch (UnexpectedValue unexpected) {
+                return unexpected.value;
+            }
+        }
+
         Object right = evaluate(expr.right);
 
+        if (expr.specialization == Specialization.UNINITIALIZED) {
+            boolean negatesNumber = expr.operator.type == TokenType.MINUS && right instanceof Double;
+
+            expr.specialization = negatesNumber ? Specialization.NEGATE_NUMBER : Specialization.GENERIC;
+        }
+
+        return unary(expr, right);
+    }
+
+    Object unary(ASTExpression.Unary expr, Object right) {
         return switch (expr.operator.type) {
             case BANG -> !isTruthy(right);
 
@@ -243,24 +668,19 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
 
     @Override
     public Object visitVariableASTExpression(ASTExpression.Variable expr) {
-        return lookUpVariable(expr.name, expr);
+        return lookUpVariable(expr.name, expr.depth, expr.slot);
     }
 
     @Override
     public Object visitAssignASTExpression(ASTExpression.Assign expr) {
         Object value = evaluate(expr.value);
 
-        Integer distance = locals.get(expr);
-
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
-        } else {
+        if (expr.depth == Environment.GLOBAL) {
             globals.assign(expr.name, value);
+        } else {
+            environment.assignAt(expr.depth, expr.slot, value);
         }
 
-
-        environment.assign(expr.name, value);
-
         return value;
     }
 
@@ -278,14 +698,35 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
     }
 
     @Override
-    public Void visitBlockASTStatement(ASTStatement.Block expr) {
-        executeBlock(expr.statements, new Environment(environment));
+    public Object visitMemoASTExpression(ASTExpression.Memo expr) {
+        // a repeated expression reads what its first occurrence in the statement just computed
+        if (expr.source != null) return expr.source.value;
 
-        return null;
+        // an expression hoisted out of a loop is computed once each time the loop is entered
+        if (expr.loop != null && expr.entry == expr.loop.entry) return expr.value;
+
+        Object value = evaluate(expr.expression);
+
+        expr.value = value;
+
+        if (expr.loop != null) expr.entry = expr.loop.entry;
+
+        return value;
+    }
+
+    @Override
+    public Completion visitBlockASTStatement(ASTStatement.Block expr) {
+        if (expr.enclosesFunctions) return executeBlock(expr.statements, new Environment(environment, expr.frameSize));
+
+        try {
+            return executeBlock(expr.statements, frames.push(environment, expr.frameSize));
+        } finally {
+            frames.pop();
+        }
     }
 
     @Override
-    public Void visitClassASTStatement(ASTStatement.Class classStatement) {
+    public Completion visitClassASTStatement(ASTStatement.Class classStatement) {
         Object superclass = null;
 
         if (classStatement.superclass != null) {
@@ -296,19 +737,19 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
             }
         }
 
-        environment.define(classStatement.name.lexeme, null);
+        define(classStatement.name, classStatement.slot, null);
 
         if (classStatement.superclass != null) {
-            environment = new Environment(environment);
-            environment.define("super", superclass);
+            environment = new Environment(environment, 1);
+            environment.define(0, superclass);
         }
 
-        Map<String, LoxFunction> methods = new HashMap<>();
+        SymbolMap<LoxFunction> methods = new SymbolMap<>();
 
         for (ASTStatement.Function method : classStatement.methods) {
-            LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"));
+            LoxFunction function = new LoxFunction(method, environment, method.name.symbol == LoxClass.INIT);
 
-            methods.put(method.name.lexeme, function);
+            methods.put(method.name.symbol, function);
         }
 
         LoxClass klass = new LoxClass(classStatement.name.lexeme, (LoxClass) superclass, methods);
@@ -318,97 +759,154 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
         }
 
         assert environment != null;
-        environment.assign(classStatement.name, klass);
+        define(classStatement.name, classStatement.slot, klass);
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitExpressionASTStatement(ASTStatement.Expression statement) {
+    public Completion visitExpressionASTStatement(ASTStatement.Expression statement) {
         evaluate(statement.expression);
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitFunctionASTStatement(ASTStatement.Function statement) {
+    public Completion visitFunctionASTStatement(ASTStatement.Function statement) {
         LoxFunction function = new LoxFunction(statement, environment, false);
 
-        environment.define(statement.name.lexeme, function);
+        define(statement.name, statement.slot, function);
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitPrintASTStatement(ASTStatement.Print statement) {
+    public Completion visitPrintASTStatement(ASTStatement.Print statement) {
         Object value = evaluate(statement.expression);
 
         System.out.println(stringify(value));
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitReturnASTStatement(ASTStatement.Return statement) {
+    public Completion visitReturnASTStatement(ASTStatement.Return statement) {
         Object value = null;
 
+        if (statement.tailCall) return tailCall((ASTExpression.Call) statement.value);
+
         if (statement.value != null) value = evaluate(statement.value);
 
-        throw new Return(value);
+        returnValue = value;
+
+        return Completion.RETURN;
+    }
+
+    // evaluates the callee and arguments of a call in tail position, and leaves calls to Lox functions to LoxFunction.invoke
+    private Completion tailCall(ASTExpression.Call expr) {
+        Object callee;
+
+        if (expr.callee instanceof ASTExpression.Get) {
+            ASTExpression.Get get = (ASTExpression.Get) expr.callee;
+
+            LoxInstance instance = receiverOf(get);
+
+            LoxFunction method = instance.method(get.name, get.cache);
+
+            if (method != null) return tailCall(method, instance, arguments(expr, method));
+
+            callee = instance.get(get.name, get.cache);
+        } else {
+            callee = evaluate(expr.callee);
+        }
+
+        if (!(callee instanceof LoxFunction)) {
+            returnValue = call(expr, callee);
+
+            return Completion.RETURN;
+        }
+
+        //noinspection PatternVariableCanBeUsed
+        LoxFunction function = (LoxFunction) callee;
+
+        return tailCall(function, function.receiver(), arguments(expr, function));
+    }
+
+    private Completion tailCall(LoxFunction function, LoxInstance receiver, List<Object> arguments) {
+        tailFunction = function;
+        tailReceiver = receiver;
+        tailArguments = arguments;
+
+        return Completion.TAIL_CALL;
     }
 
     @Override
-    public Void visitVarASTStatement(ASTStatement.Var statement) {
+    public Completion visitVarASTStatement(ASTStatement.Var statement) {
         Object value = null;
 
         if (statement.initializer != null) {
             value = evaluate(statement.initializer);
         }
 
-        environment.define(statement.name.lexeme, value);
+        define(statement.name, statement.slot, value);
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitWhileASTStatement(ASTStatement.While expr) {
+    public Completion visitWhileASTStatement(ASTStatement.While expr) {
+        // values memoized for an earlier run of the loop, or for a run further up the stack, don't match the new entry
+        long enclosingEntry = expr.entry;
 
-        while (isTruthy(evaluate(expr.condition))) {
-            execute(expr.body);
-        }
+        expr.entry = ++loopEntries;
 
-        return null;
+        try {
+            while (isTruthy(evaluate(expr.condition))) {
+                if (profiled != null) profiled.backEdges++;
+
+                Completion completion = execute(expr.body);
+
+                if (completion != Completion.NORMAL) return completion;
+            }
+
+            return Completion.NORMAL;
+        } finally {
+            expr.entry = enclosingEntry;
+        }
     }
 
     @Override
-    public Void visitIfASTStatement(ASTStatement.If statement) {
+    public Completion visitIfASTStatement(ASTStatement.If statement) {
         if (isTruthy(evaluate(statement.condition))) {
-            execute(statement.thenBranch);
+            return execute(statement.thenBranch);
         } else if (statement.elseBranch != null) {
-            execute(statement.elseBranch);
+            return execute(statement.elseBranch);
         }
 
-        return null;
+        return Completion.NORMAL;
     }
 
     private Object evaluate(ASTExpression expr) {
         return expr.accept(this);
     }
 
-    private void execute(ASTStatement stmt) {
-        stmt.accept(this);
+    private Completion execute(ASTStatement stmt) {
+        return stmt.accept(this);
     }
 
-    void executeBlock(List<ASTStatement> statements, Environment environment) {
+    Completion executeBlock(List<ASTStatement> statements, Environment environment) {
         Environment previous = this.environment;
 
         try {
             this.environment = environment;
 
             for (ASTStatement statement : statements) {
-                execute(statement);
+                Completion completion = execute(statement);
+
+                if (completion != Completion.NORMAL) return completion;
             }
 
+            return Completion.NORMAL;
         } finally {
             this.environment = previous;
         }
@@ -429,7 +927,7 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
 
-    private String stringify(Object object) {
+    String stringify(Object object) {
         if (object == null) return "nil";
 
         if (object instanceof Double) {
@@ -445,17 +943,19 @@ public class Interpreter implements ASTExpression.Visitor<Object>, ASTStatement.
         return object.toString();
     }
 
-    public void resolve(ASTExpression expr, int depth) {
-        locals.put(expr, depth);
+    private void define(Token name, int slot, Object value) {
+        if (slot == Environment.GLOBAL) {
+            environment.define(name, value);
+        } else {
+            environment.define(slot, value);
+        }
     }
 
-    private Object lookUpVariable(Token name, ASTExpression expr) {
-        Integer distance = locals.get(expr);
-
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
-        } else {
+    private Object lookUpVariable(Token name, int depth, int slot) {
+        if (depth == Environment.GLOBAL) {
             return globals.get(name);
+        } else {
+            return environment.getAt(depth, slot);
         }
     }
 }
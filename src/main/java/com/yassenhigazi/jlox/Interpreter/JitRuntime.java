@@ -0,0 +1,203 @@
+package com.yassenhigazi.jlox.Interpreter;
+
+import com.yassenhigazi.jlox.Errors.NotCallableError;
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Scanner.Token;
+import com.yassenhigazi.jlox.Utils.DoubleCache;
+
+import java.util.Arrays;
+
+/**
+ * The operations compiled code calls into. Numbers take a fast path here, anything else goes to the interpreter so the
+ * results and the errors are exactly the ones the tree-walker gives.
+ */
+public final class JitRuntime {
+    private JitRuntime() {
+    }
+
+    public static Object add(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return DoubleCache.box((double) left + (double) right);
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object subtract(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return DoubleCache.box((double) left - (double) right);
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object multiply(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return DoubleCache.box((double) left * (double) right);
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object divide(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        // a zero on either side is left to the interpreter to report
+        if (left instanceof Double && right instanceof Double && (double) left != 0.0 && (double) right != 0.0) {
+            return DoubleCache.box((double) left / (double) right);
+        }
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object greater(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return (double) left > (double) right;
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object greaterEqual(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return (double) left >= (double) right;
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object less(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return (double) left < (double) right;
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object lessEqual(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return (double) left <= (double) right;
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object equal(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return (double) left == (double) right;
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object notEqual(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        if (left instanceof Double && right instanceof Double) return (double) left != (double) right;
+
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object binary(Object left, Object right, Interpreter interpreter, ASTExpression.Binary expr) {
+        return interpreter.binary(expr, left, right);
+    }
+
+    public static Object negate(Object right, Interpreter interpreter, ASTExpression.Unary expr) {
+        if (right instanceof Double) return DoubleCache.box(-(double) right);
+
+        return interpreter.unary(expr, right);
+    }
+
+    public static Object not(Object right) {
+        return !isTruthy(right);
+    }
+
+    public static boolean isTruthy(Object object) {
+        if (object == null) return false;
+
+        if (object instanceof Boolean) return (boolean) object;
+
+        return true;
+    }
+
+    public static Object global(Interpreter interpreter, Token name) {
+        return interpreter.globals.get(name);
+    }
+
+    public static Object assignGlobal(Object value, Interpreter interpreter, Token name) {
+        interpreter.globals.assign(name, value);
+
+        return value;
+    }
+
+    public static void print(Object value, Interpreter interpreter) {
+        System.out.println(interpreter.stringify(value));
+    }
+
+    // checked before the arguments are evaluated, like the interpreter does
+    public static Object callable(Object callee, ASTExpression.Call expr) {
+        if (!(callee instanceof LoxCallable)) {
+            throw new NotCallableError(expr.paren, "Can only call functions and classes.");
+        }
+
+        return callee;
+    }
+
+    public static Object call(Object callee, Object[] arguments, Interpreter interpreter, ASTExpression.Call expr) {
+        LoxCallable function = (LoxCallable) callee;
+
+        interpreter.checkArity(expr, function);
+
+        switch (arguments.length) {
+            case 0:
+                return function.call0(interpreter);
+            case 1:
+                return function.call1(interpreter, arguments[0]);
+            case 2:
+                return function.call2(interpreter, arguments[0], arguments[1]);
+            case 3:
+                return function.call3(interpreter, arguments[0], arguments[1], arguments[2]);
+            case 4:
+                return function.call4(interpreter, arguments[0], arguments[1], arguments[2], arguments[3]);
+            default:
+                return function.call(interpreter, Arrays.asList(arguments));
+        }
+    }
+
+    // calls with up to four arguments pass them one by one, like the interpreter does
+    public static Object call0(Object callee, Interpreter interpreter, ASTExpression.Call expr) {
+        LoxCallable function = (LoxCallable) callee;
+
+        interpreter.checkArity(expr, function);
+
+        return function.call0(interpreter);
+    }
+
+    public static Object call1(Object callee, Object a, Interpreter interpreter, ASTExpression.Call expr) {
+        LoxCallable function = (LoxCallable) callee;
+
+        interpreter.checkArity(expr, function);
+
+        return function.call1(interpreter, a);
+    }
+
+    public static Object call2(Object callee, Object a, Object b, Interpreter interpreter, ASTExpression.Call expr) {
+        LoxCallable function = (LoxCallable) callee;
+
+        interpreter.checkArity(expr, function);
+
+        return function.call2(interpreter, a, b);
+    }
+
+    public static Object call3(Object callee, Object a, Object b, Object c, Interpreter interpreter, ASTExpression.Call expr) {
+        LoxCallable function = (LoxCallable) callee;
+
+        interpreter.checkArity(expr, function);
+
+        return function.call3(interpreter, a, b, c);
+    }
+
+    public static Object call4(Object callee, Object a, Object b, Object c, Object d, Interpreter interpreter, ASTExpression.Call expr) {
+        LoxCallable function = (LoxCallable) callee;
+
+        interpreter.checkArity(expr, function);
+
+        return function.call4(interpreter, a, b, c, d);
+    }
+
+    // a call to a Lox function in tail position is handed back to LoxFunction.run, like a tail call the interpreter makes
+    public static Object tailCall(Object callee, Object[] arguments, Interpreter interpreter, ASTExpression.Call expr) {
+        if (!(callee instanceof LoxFunction)) return call(callee, arguments, interpreter, expr);
+
+        //noinspection PatternVariableCanBeUsed
+        LoxFunction function = (LoxFunction) callee;
+
+        interpreter.checkArity(expr, function);
+
+        interpreter.tailFunction = function;
+        interpreter.tailReceiver = function.receiver();
+        interpreter.tailArguments = Arrays.asList(arguments);
+
+        return CompiledFunction.TAIL_CALL;
+    }
+}
@@ -1,9 +1,32 @@
 package com.yassenhigazi.jlox.Interpreter;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 interface LoxCallable {
     int arity();
 
     Object call(Interpreter interpreter, List<Object> arguments);
-}
\ No newline at end of file
+
+    // fixed-arity entry points for the common calls, callables that can take their arguments one by one override these
+    default Object call0(Interpreter interpreter) {
+        return call(interpreter, Collections.emptyList());
+    }
+
+    default Object call1(Interpreter interpreter, Object a) {
+        return call(interpreter, Collections.singletonList(a));
+    }
+
+    default Object call2(Interpreter interpreter, Object a, Object b) {
+        return call(interpreter, Arrays.asList(a, b));
+    }
+
+    default Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+        return call(interpreter, Arrays.asList(a, b, c));
+    }
+
+    default Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d) {
+        return call(interpreter, Arrays.asList(a, b, c, d));
+    }
+}
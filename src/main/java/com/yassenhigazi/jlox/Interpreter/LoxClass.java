@@ -1,18 +1,39 @@
 package com.yassenhigazi.jlox.Interpreter;
 
+import com.yassenhigazi.jlox.Scanner.Symbols;
+import com.yassenhigazi.jlox.Utils.SymbolMap;
+
 import java.util.List;
-import java.util.Map;
 
 public class LoxClass implements LoxCallable {
+    static final int INIT = Symbols.intern("init");
+
     final String name;
     final LoxClass superclass;
-    private final Map<String, LoxFunction> methods;
+
+    // own and inherited methods, filled once when the class is defined so lookups never walk the superclass chain
+    private final SymbolMap<LoxFunction> methods = new SymbolMap<>();
+
+    private final LoxFunction initializer;
+    private final int arity;
+
+    // every instance starts with this shape and no fields
+    final Shape rootShape = new Shape();
+
+    // the most fields an instance of the class got so far, new instances size their values for it
+    int fieldCapacity = 0;
 
     @SuppressWarnings("ClassEscapesDefinedScope")
-    public LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) {
+    public LoxClass(String name, LoxClass superclass, SymbolMap<LoxFunction> methods) {
         this.superclass = superclass;
         this.name = name;
-        this.methods = methods;
+
+        if (superclass != null) this.methods.putAll(superclass.methods);
+
+        this.methods.putAll(methods);
+
+        this.initializer = this.methods.get(INIT);
+        this.arity = initializer == null ? 0 : initializer.arity();
     }
 
     @Override
@@ -22,34 +43,65 @@ public class LoxClass implements LoxCallable {
 
     @Override
     public int arity() {
-        LoxFunction initializer = findMethod("init");
-
-        if (initializer == null) return 0;
+        return arity;
+    }
 
-        return initializer.arity();
+    LoxFunction findMethod(int symbol) {
+        return methods.get(symbol);
     }
 
-    LoxFunction findMethod(String name) {
-        if (methods.containsKey(name)) {
-            return methods.get(name);
-        }
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        LoxInstance instance = new LoxInstance(this);
 
-        if (superclass != null) {
-            return superclass.findMethod(name);
+        if (initializer != null) {
+            initializer.invoke(interpreter, instance, arguments);
         }
 
-        return null;
+        return instance;
     }
 
     @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
+    public Object call0(Interpreter interpreter) {
         LoxInstance instance = new LoxInstance(this);
 
-        LoxFunction initializer = findMethod("init");
+        if (initializer != null) initializer.invoke0(interpreter, instance);
 
-        if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
-        }
+        return instance;
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object a) {
+        LoxInstance instance = new LoxInstance(this);
+
+        if (initializer != null) initializer.invoke1(interpreter, instance, a);
+
+        return instance;
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object a, Object b) {
+        LoxInstance instance = new LoxInstance(this);
+
+        if (initializer != null) initializer.invoke2(interpreter, instance, a, b);
+
+        return instance;
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+        LoxInstance instance = new LoxInstance(this);
+
+        if (initializer != null) initializer.invoke3(interpreter, instance, a, b, c);
+
+        return instance;
+    }
+
+    @Override
+    public Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d) {
+        LoxInstance instance = new LoxInstance(this);
+
+        if (initializer != null) initializer.invoke4(interpreter, instance, a, b, c, d);
 
         return instance;
     }
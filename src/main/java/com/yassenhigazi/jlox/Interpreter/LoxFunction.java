@@ -1,7 +1,6 @@
 package com.yassenhigazi.jlox.Interpreter;
 
 import com.yassenhigazi.jlox.Environment.Environment;
-import com.yassenhigazi.jlox.Errors.Return;
 import com.yassenhigazi.jlox.Parser.ASTStatement;
 
 import java.util.List;
@@ -13,11 +12,19 @@ class LoxFunction implements LoxCallable {
 
     private final boolean isInitializer;
 
+    // the instance a bound method runs on, null for plain functions and for the methods held by a class
+    private final LoxInstance receiver;
+
 
     LoxFunction(ASTStatement.Function declaration, Environment closure, boolean isInitializer) {
+        this(declaration, closure, isInitializer, null);
+    }
+
+    private LoxFunction(ASTStatement.Function declaration, Environment closure, boolean isInitializer, LoxInstance receiver) {
         this.isInitializer = isInitializer;
         this.declaration = declaration;
         this.closure = closure;
+        this.receiver = receiver;
     }
 
     @Override
@@ -27,32 +34,206 @@ class LoxFunction implements LoxCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        return invoke(interpreter, receiver, arguments);
+    }
 
-        Environment environment = new Environment(closure);
+    @Override
+    public Object call0(Interpreter interpreter) {
+        return invoke0(interpreter, receiver);
+    }
 
-        for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+    @Override
+    public Object call1(Interpreter interpreter, Object a) {
+        return invoke1(interpreter, receiver, a);
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object a, Object b) {
+        return invoke2(interpreter, receiver, a, b);
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+        return invoke3(interpreter, receiver, a, b, c);
+    }
+
+    @Override
+    public Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d) {
+        return invoke4(interpreter, receiver, a, b, c, d);
+    }
+
+    // runs the function with "this" set to the given instance, without binding the method first
+    Object invoke(Interpreter interpreter, LoxInstance instance, List<Object> arguments) {
+        Environment environment = frame(interpreter, instance);
+
+        int first = firstParameter(instance);
+
+        for (int i = 0; i < arguments.size(); i++) {
+            environment.define(first + i, arguments.get(i));
         }
 
-        try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (Return returnValue) {
-            if (isInitializer) return closure.getAt(0, "this");
+        return run(interpreter, instance, environment);
+    }
+
+    // the fixed-arity versions put the arguments straight into the frame
+    Object invoke0(Interpreter interpreter, LoxInstance instance) {
+        return run(interpreter, instance, frame(interpreter, instance));
+    }
+
+    Object invoke1(Interpreter interpreter, LoxInstance instance, Object a) {
+        Environment environment = frame(interpreter, instance);
+
+        int first = firstParameter(instance);
+
+        environment.define(first, a);
+
+        return run(interpreter, instance, environment);
+    }
+
+    Object invoke2(Interpreter interpreter, LoxInstance instance, Object a, Object b) {
+        Environment environment = frame(interpreter, instance);
+
+        int first = firstParameter(instance);
+
+        environment.define(first, a);
+        environment.define(first + 1, b);
+
+        return run(interpreter, instance, environment);
+    }
+
+    Object invoke3(Interpreter interpreter, LoxInstance instance, Object a, Object b, Object c) {
+        Environment environment = frame(interpreter, instance);
+
+        int first = firstParameter(instance);
+
+        environment.define(first, a);
+        environment.define(first + 1, b);
+        environment.define(first + 2, c);
+
+        return run(interpreter, instance, environment);
+    }
+
+    Object invoke4(Interpreter interpreter, LoxInstance instance, Object a, Object b, Object c, Object d) {
+        Environment environment = frame(interpreter, instance);
+
+        int first = firstParameter(instance);
 
-            return returnValue.value;
+        environment.define(first, a);
+        environment.define(first + 1, b);
+        environment.define(first + 2, c);
+        environment.define(first + 3, d);
+
+        return run(interpreter, instance, environment);
+    }
+
+    // a method keeps "this" in the first slot of its scope, the parameters take the slots after it
+    private Environment frame(Interpreter interpreter, LoxInstance instance) {
+        Environment environment;
+
+        // nothing can hold on to the frame of a function without closures after it returns, so it comes from the frame stack
+        if (declaration.enclosesFunctions) {
+            environment = new Environment(closure, declaration.frameSize);
+        } else {
+            environment = interpreter.frames.push(closure, declaration.frameSize);
         }
 
-        if (isInitializer) return closure.getAt(0, "this");
+        if (instance != null) environment.define(0, instance);
 
-        return null;
+        return environment;
     }
 
-    LoxFunction bind(LoxInstance instance) {
-        Environment environment = new Environment(closure);
+    private void release(Interpreter interpreter) {
+        if (!declaration.enclosesFunctions) interpreter.frames.pop();
+    }
+
+    private static int firstParameter(LoxInstance instance) {
+        return instance == null ? 0 : 1;
+    }
+
+    // executes the body in a frame that already holds the receiver and the arguments
+    private Object run(Interpreter interpreter, LoxInstance instance, Environment environment) {
+        LoxFunction function = this;
+
+        ASTStatement.Function enclosingProfiled = interpreter.profiled;
+
+        try {
+            // calls in tail position come back here to run in place of the one that made them, so the Java stack stays flat
+            while (true) {
+                Completion completion;
+
+                CompiledFunction compiled = function.declaration.compiled;
+
+                if (compiled != null) {
+                    Object result = compiled.run(interpreter, environment);
+
+                    if (result != CompiledFunction.TAIL_CALL) return result;
+
+                    completion = Completion.TAIL_CALL;
+                } else {
+                    function.profile(interpreter, instance);
+
+                    completion = interpreter.executeBlock(function.declaration.body, environment);
+                }
+
+                if (completion != Completion.TAIL_CALL) {
+                    if (function.isInitializer) return instance;
+
+                    if (completion == Completion.RETURN) return interpreter.returnValue;
+
+                    return null;
+                }
 
-        environment.define("this", instance);
+                LoxFunction next = interpreter.tailFunction;
 
-        return new LoxFunction(declaration, environment, isInitializer);
+                instance = interpreter.tailReceiver;
+
+                // a function calling itself again overwrites its own frame, unless a closure made in it may still hold the frame
+                boolean sameFrame = next.declaration == function.declaration && next.closure == function.closure;
+
+                if (sameFrame && !function.declaration.enclosesFunctions) {
+                    if (instance != null) environment.define(0, instance);
+                } else {
+                    function.release(interpreter);
+
+                    environment = next.frame(interpreter, instance);
+                }
+
+                function = next;
+
+                List<Object> arguments = interpreter.tailArguments;
+
+                int first = firstParameter(instance);
+
+                for (int i = 0; i < arguments.size(); i++) {
+                    environment.define(first + i, arguments.get(i));
+                }
+            }
+        } finally {
+            function.release(interpreter);
+
+            interpreter.profiled = enclosingProfiled;
+        }
+    }
+
+    // only plain functions are compiled, methods and initializers always run in the interpreter
+    private void profile(Interpreter interpreter, LoxInstance instance) {
+        if (interpreter.jit == null || instance != null || isInitializer) {
+            interpreter.profiled = null;
+
+            return;
+        }
+
+        interpreter.jit.profile(declaration);
+
+        interpreter.profiled = declaration;
+    }
+
+    LoxInstance receiver() {
+        return receiver;
+    }
+
+    LoxFunction bind(LoxInstance instance) {
+        return new LoxFunction(declaration, closure, isInitializer, instance);
     }
 
     @Override
@@ -3,16 +3,20 @@ package com.yassenhigazi.jlox.Interpreter;
 import com.yassenhigazi.jlox.Errors.RuntimeError;
 import com.yassenhigazi.jlox.Scanner.Token;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class LoxInstance {
 
     private final LoxClass klass;
-    private final Map<String, Object> fields = new HashMap<>();
+
+    // values[i] holds the field the shape maps to slot i
+    private Shape shape;
+    private Object[] values;
 
     public LoxInstance(LoxClass klass) {
         this.klass = klass;
+        this.shape = klass.rootShape;
+        this.values = new Object[klass.fieldCapacity];
     }
 
     @Override
@@ -20,19 +24,100 @@ public class LoxInstance {
         return klass.name + " instance";
     }
 
-    Object get(Token name) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+    Object get(Token name, InlineCache cache) {
+        int entry = cache.find(shape);
+
+        if (entry >= 0) {
+            LoxFunction method = cache.method(entry);
+
+            if (method != null) return method.bind(this);
+
+            return values[cache.slot(entry)];
+        }
+
+        int slot = shape.slot(name.symbol);
+
+        if (slot >= 0) {
+            cache.add(shape, slot, null, null);
+
+            return values[slot];
+        }
+
+        // the shape says this instance has no field shadowing the method, so the entry stays valid for it
+        LoxFunction method = klass.findMethod(name.symbol);
+
+        if (method != null) {
+            cache.add(shape, -1, method, null);
+
+            return method.bind(this);
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    // the method a call site invokes on this instance, or null when the name is a field and the call goes through get
+    LoxFunction method(Token name, InlineCache cache) {
+        int entry = cache.find(shape);
+
+        if (entry >= 0) return cache.method(entry);
+
+        int slot = shape.slot(name.symbol);
+
+        if (slot >= 0) {
+            cache.add(shape, slot, null, null);
+
+            return null;
         }
 
-        LoxFunction method = klass.findMethod(name.lexeme);
+        LoxFunction method = klass.findMethod(name.symbol);
+
+        if (method != null) {
+            cache.add(shape, -1, method, null);
 
-        if (method != null) return method.bind(this);
+            return method;
+        }
 
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
-    public void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+    public void set(Token name, Object value, InlineCache cache) {
+        int entry = cache.find(shape);
+
+        if (entry >= 0) {
+            Shape next = cache.transition(entry);
+
+            if (next != null) moveTo(next);
+
+            values[cache.slot(entry)] = value;
+
+            return;
+        }
+
+        Shape previous = shape;
+
+        int slot = shape.slot(name.symbol);
+
+        if (slot >= 0) {
+            cache.add(previous, slot, null, null);
+        } else {
+            moveTo(shape.with(name.symbol));
+
+            slot = shape.size - 1;
+
+            cache.add(previous, slot, null, shape);
+        }
+
+        values[slot] = value;
+    }
+
+    private void moveTo(Shape next) {
+        if (values.length < next.size) {
+            values = Arrays.copyOf(values, Math.max(next.size, values.length * 2));
+        }
+
+        // later instances of the class start out big enough for every field this one got
+        if (klass.fieldCapacity < next.size) klass.fieldCapacity = next.size;
+
+        shape = next;
     }
 }
@@ -0,0 +1,54 @@
+package com.yassenhigazi.jlox.Interpreter;
+
+import java.util.Arrays;
+
+/**
+ * The field layout shared by instances that got the same fields assigned in the same order.
+ * Shapes form a transition tree rooted at each class: assigning a new field moves an instance to the child shape
+ * for that name, which is created once and reused by every later instance taking the same path.
+ */
+class Shape {
+    // the symbol of the field in each slot, instances have few fields so a scan beats hashing
+    private final int[] symbols;
+    private int[] transitionSymbols = new int[0];
+    private Shape[] transitions = new Shape[0];
+    final int size;
+
+    Shape() {
+        symbols = new int[0];
+        size = 0;
+    }
+
+    private Shape(Shape parent, int symbol) {
+        symbols = Arrays.copyOf(parent.symbols, parent.size + 1);
+        symbols[parent.size] = symbol;
+        size = parent.size + 1;
+    }
+
+    // returns the index of the field in the instance's values, or -1 if instances of this shape don't have it
+    int slot(int symbol) {
+        for (int i = 0; i < symbols.length; i++) {
+            if (symbols[i] == symbol) return i;
+        }
+
+        return -1;
+    }
+
+    Shape with(int symbol) {
+        for (int i = 0; i < transitionSymbols.length; i++) {
+            if (transitionSymbols[i] == symbol) return transitions[i];
+        }
+
+        Shape next = new Shape(this, symbol);
+
+        int count = transitionSymbols.length;
+
+        transitionSymbols = Arrays.copyOf(transitionSymbols, count + 1);
+        transitions = Arrays.copyOf(transitions, count + 1);
+
+        transitionSymbols[count] = symbol;
+        transitions[count] = next;
+
+        return next;
+    }
+}
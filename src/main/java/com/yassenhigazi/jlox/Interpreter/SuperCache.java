@@ -0,0 +1,21 @@
+package com.yassenhigazi.jlox.Interpreter;
+
+/**
+ * Remembers, for a single super site, the method it found on the superclass. The flattened method table of a class
+ * never changes, so the entry only has to be checked against the superclass: a class declared in a function body is a
+ * new class each time the declaration runs, and the site then looks the method up again.
+ */
+public class SuperCache {
+    private LoxClass superclass;
+    private LoxFunction method;
+
+    // returns null when the superclass has no method by that symbol
+    LoxFunction find(LoxClass superclass, int symbol) {
+        if (this.superclass != superclass) {
+            this.superclass = superclass;
+            this.method = superclass.findMethod(symbol);
+        }
+
+        return method;
+    }
+}
@@ -0,0 +1,406 @@
+package com.yassenhigazi.jlox.JIT;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of a class file writer for the classes the JIT defines: a constant pool, fields and methods with a Code
+ * attribute. The classes are written in version 49, the last one the JVM verifies by inferring types, so no stack map
+ * frames have to be computed for the jumps.
+ */
+final class ClassWriter {
+    private static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream memberBytes = new ByteArrayOutputStream();
+    private final DataOutputStream members = new DataOutputStream(memberBytes);
+    private int fieldCount = 0;
+
+    private final List<Code> methods = new ArrayList<>();
+
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+
+    ClassWriter(String name, String superName, String... interfaces) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+    }
+
+    void field(int access, String name, String descriptor) {
+        try {
+            members.writeShort(access);
+            members.writeShort(utf8(name));
+            members.writeShort(utf8(descriptor));
+            members.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        fieldCount++;
+    }
+
+    // the returned code is written out with the class, so it can be filled in after the call
+    Code method(int access, String name, String descriptor, int arguments) {
+        Code code = new Code(this, access, utf8(name), utf8(descriptor), arguments);
+
+        methods.add(code);
+
+        return code;
+    }
+
+    byte[] toByteArray() {
+        int thisClass = classRef(name);
+        int superClass = classRef(superName);
+
+        int[] interfaceRefs = new int[interfaces.length];
+
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceRefs[i] = classRef(interfaces[i]);
+        }
+
+        int codeName = utf8("Code");
+
+        try {
+            ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(methodBytes);
+
+            for (Code code : methods) {
+                code.write(out, codeName);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream file = new DataOutputStream(bytes);
+
+            file.writeInt(0xCAFEBABE);
+            file.writeShort(0);
+            file.writeShort(VERSION);
+
+            file.writeShort(poolCount);
+            file.write(poolBytes.toByteArray());
+
+            file.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            file.writeShort(thisClass);
+            file.writeShort(superClass);
+
+            file.writeShort(interfaceRefs.length);
+
+            for (int ref : interfaceRefs) {
+                file.writeShort(ref);
+            }
+
+            file.writeShort(fieldCount);
+            file.write(memberBytes.toByteArray());
+
+            file.writeShort(methods.size());
+            file.write(methodBytes.toByteArray());
+
+            // no class attributes
+            file.writeShort(0);
+
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, () -> {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+        });
+    }
+
+    int integer(int value) {
+        return entry("I" + value, () -> {
+            pool.writeByte(CONSTANT_INTEGER);
+            pool.writeInt(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+
+        return entry("C" + internalName, () -> {
+            pool.writeByte(CONSTANT_CLASS);
+            pool.writeShort(nameIndex);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+
+        int nameAndType = entry("N" + name + " " + descriptor, () -> {
+            pool.writeByte(CONSTANT_NAME_AND_TYPE);
+            pool.writeShort(nameIndex);
+            pool.writeShort(descriptorIndex);
+        });
+
+        return entry(tag + owner + "." + name + " " + descriptor, () -> {
+            pool.writeByte(tag);
+            pool.writeShort(ownerIndex);
+            pool.writeShort(nameAndType);
+        });
+    }
+
+    private interface PoolEntry {
+        void write() throws IOException;
+    }
+
+    private int entry(String key, PoolEntry entry) {
+        Integer index = entries.get(key);
+
+        if (index != null) return index;
+
+        try {
+            entry.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        entries.put(key, poolCount);
+
+        return poolCount++;
+    }
+
+    /**
+     * The instructions of one method. Every value the JIT works with is a reference, so the operand stack is tracked as
+     * a plain depth; labels are offsets patched into the jumps that target them once they are placed.
+     */
+    static final class Code {
+        static final int ACONST_NULL = 0x01;
+        static final int AALOAD = 0x32;
+        static final int AASTORE = 0x53;
+        static final int POP = 0x57;
+        static final int DUP = 0x59;
+        static final int IFEQ = 0x99;
+        static final int IFNE = 0x9a;
+        static final int GOTO = 0xa7;
+        static final int ARETURN = 0xb0;
+        static final int RETURN = 0xb1;
+
+        // the longest method the two byte jump offsets can cross
+        static final int MAX_LENGTH = 0x7fff;
+
+        private final ClassWriter owner;
+        private final int access;
+        private final int name;
+        private final int descriptor;
+
+        private byte[] bytes = new byte[64];
+        private int length = 0;
+
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+
+        private Code(ClassWriter owner, int access, int name, int descriptor, int arguments) {
+            this.owner = owner;
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = arguments;
+        }
+
+        int length() {
+            return length;
+        }
+
+        void op(int opcode, int stackChange) {
+            write(opcode);
+
+            grow(stackChange);
+        }
+
+        void load(int local) {
+            if (local < 4) {
+                op(0x2a + local, 1);
+            } else {
+                op(0x19, 1);
+                write(local);
+            }
+
+            use(local);
+        }
+
+        void store(int local) {
+            if (local < 4) {
+                op(0x4b + local, -1);
+            } else {
+                op(0x3a, -1);
+                write(local);
+            }
+
+            use(local);
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(0x03 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(0x10, 1);
+                write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(0x11, 1);
+                writeShort(value);
+            } else {
+                op(0x13, 1);
+                writeShort(owner.integer(value));
+            }
+        }
+
+        void checkCast(String internalName) {
+            op(0xc0, 0);
+            writeShort(owner.classRef(internalName));
+        }
+
+        void newArray(String internalName) {
+            op(0xbd, 0);
+            writeShort(owner.classRef(internalName));
+        }
+
+        void getField(String owner, String name, String descriptor) {
+            op(0xb4, 0);
+            writeShort(this.owner.fieldRef(owner, name, descriptor));
+        }
+
+        void putField(String owner, String name, String descriptor) {
+            op(0xb5, -2);
+            writeShort(this.owner.fieldRef(owner, name, descriptor));
+        }
+
+        void invokeStatic(String owner, String name, String descriptor) {
+            op(0xb8, stackChange(descriptor, false));
+            writeShort(this.owner.methodRef(owner, name, descriptor));
+        }
+
+        void invokeVirtual(String owner, String name, String descriptor) {
+            op(0xb6, stackChange(descriptor, true));
+            writeShort(this.owner.methodRef(owner, name, descriptor));
+        }
+
+        void invokeSpecial(String owner, String name, String descriptor) {
+            op(0xb7, stackChange(descriptor, true));
+            writeShort(this.owner.methodRef(owner, name, descriptor));
+        }
+
+        // returns the offset of the jump, for patch
+        int jump(int opcode) {
+            int at = length();
+
+            op(opcode, opcode == GOTO ? 0 : -1);
+            writeShort(0);
+
+            return at;
+        }
+
+        void jumpBack(int opcode, int target) {
+            int at = length();
+
+            op(opcode, opcode == GOTO ? 0 : -1);
+            writeShort(target - at);
+        }
+
+        // points the jump at the next instruction
+        void patch(int jump) {
+            int offset = length - jump;
+
+            bytes[jump + 1] = (byte) (offset >> 8);
+            bytes[jump + 2] = (byte) offset;
+        }
+
+        private void use(int local) {
+            maxLocals = Math.max(maxLocals, local + 1);
+        }
+
+        private void grow(int change) {
+            stack += change;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void write(int value) {
+            if (length == bytes.length) bytes = Arrays.copyOf(bytes, length * 2);
+
+            bytes[length++] = (byte) value;
+        }
+
+        private void writeShort(int value) {
+            write(value >> 8);
+            write(value);
+        }
+
+        private void write(DataOutputStream out, int codeName) throws IOException {
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(bytes, 0, length);
+
+            // no exception table and no attributes
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+        // every parameter and return type the JIT uses is a single slot: a reference, an int or a boolean
+        private static int stackChange(String descriptor, boolean hasReceiver) {
+            int arguments = 0;
+
+            int i = 1;
+
+            while (descriptor.charAt(i) != ')') {
+                char c = descriptor.charAt(i);
+
+                while (c == '[') c = descriptor.charAt(++i);
+
+                if (c == 'L') i = descriptor.indexOf(';', i);
+
+                arguments++;
+                i++;
+            }
+
+            int result = descriptor.charAt(i + 1) == 'V' ? 0 : 1;
+
+            return result - arguments - (hasReceiver ? 1 : 0);
+        }
+    }
+}
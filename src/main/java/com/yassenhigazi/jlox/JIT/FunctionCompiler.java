@@ -0,0 +1,474 @@
+package com.yassenhigazi.jlox.JIT;
+
+import com.yassenhigazi.jlox.Environment.Environment;
+import com.yassenhigazi.jlox.Errors.NotCompilable;
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Scanner.Token;
+import com.yassenhigazi.jlox.Scanner.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates the body of a plain Lox function into a class implementing CompiledFunction. Parameters and locals become
+ * JVM locals, globals and operators go through JitRuntime, and loops and branches become jumps. The function may only
+ * name its own locals and globals: closures, classes, properties, "this" and "super" throw NotCompilable and leave the
+ * function to the interpreter.
+ */
+final class FunctionCompiler implements ASTExpression.Visitor<Void>, ASTStatement.Visitor<Void> {
+    static final String CLASS_NAME = "com/yassenhigazi/jlox/JIT/CompiledBody";
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String RUNTIME = "com/yassenhigazi/jlox/Interpreter/JitRuntime";
+    private static final String INTERPRETER = "com/yassenhigazi/jlox/Interpreter/Interpreter";
+    private static final String COMPILED_FUNCTION = "com/yassenhigazi/jlox/Interpreter/CompiledFunction";
+    private static final String ENVIRONMENT = "com/yassenhigazi/jlox/Environment/Environment";
+    private static final String TOKEN = "com/yassenhigazi/jlox/Scanner/Token";
+    private static final String BINARY = "com/yassenhigazi/jlox/Parser/ASTExpression$Binary";
+    private static final String UNARY = "com/yassenhigazi/jlox/Parser/ASTExpression$Unary";
+    private static final String CALL = "com/yassenhigazi/jlox/Parser/ASTExpression$Call";
+
+    private static final String BINARY_OPERATION = "(Ljava/lang/Object;Ljava/lang/Object;L" + INTERPRETER + ";L" + BINARY + ";)Ljava/lang/Object;";
+    private static final String CALL_OPERATION = "(Ljava/lang/Object;[Ljava/lang/Object;L" + INTERPRETER + ";L" + CALL + ";)Ljava/lang/Object;";
+
+    // the JVM locals of the run method, the Lox locals come after them
+    private static final int INTERPRETER_LOCAL = 1;
+    private static final int FRAME_LOCAL = 2;
+    private static final int CONSTANTS_LOCAL = 3;
+    private static final int FIRST_LOCAL = 4;
+
+    // load and store take a one byte index
+    private static final int MAX_LOCALS = 256;
+
+    private final ASTStatement.Function function;
+
+    // tokens, nodes and literal values the compiled code reads, handed to the class when it is created
+    private final List<Object> constants = new ArrayList<>();
+
+    // the JVM local of each Lox local, one map per block
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+    private int nextLocal = FIRST_LOCAL;
+
+    private ClassWriter.Code code;
+
+    FunctionCompiler(ASTStatement.Function function) {
+        this.function = function;
+    }
+
+    byte[] compile() {
+        if (function.enclosesFunctions) throw new NotCompilable("declares a function or class");
+
+        ClassWriter writer = new ClassWriter(CLASS_NAME, OBJECT, COMPILED_FUNCTION);
+
+        writer.field(ClassWriter.ACC_PRIVATE | ClassWriter.ACC_FINAL, "constants", "[Ljava/lang/Object;");
+
+        ClassWriter.Code constructor = writer.method(ClassWriter.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", 2);
+
+        constructor.load(0);
+        constructor.invokeSpecial(OBJECT, "<init>", "()V");
+        constructor.load(0);
+        constructor.load(1);
+        constructor.putField(CLASS_NAME, "constants", "[Ljava/lang/Object;");
+        constructor.op(ClassWriter.Code.RETURN, 0);
+
+        code = writer.method(ClassWriter.ACC_PUBLIC, "run", "(L" + INTERPRETER + ";L" + ENVIRONMENT + ";)Ljava/lang/Object;", 3);
+
+        code.load(0);
+        code.getField(CLASS_NAME, "constants", "[Ljava/lang/Object;");
+        code.store(CONSTANTS_LOCAL);
+
+        // the caller left the arguments in the frame
+        beginScope();
+
+        for (int i = 0; i < function.params.size(); i++) {
+            code.load(FRAME_LOCAL);
+            code.pushInt(0);
+            code.pushInt(i);
+            code.invokeVirtual(ENVIRONMENT, "getAt", "(II)Ljava/lang/Object;");
+            code.store(declare(function.params.get(i)));
+        }
+
+        compile(function.body);
+
+        // falling off the end returns nil
+        code.op(ClassWriter.Code.ACONST_NULL, 1);
+        code.op(ClassWriter.Code.ARETURN, -1);
+
+        endScope();
+
+        if (code.length() > ClassWriter.Code.MAX_LENGTH) throw new NotCompilable("too long");
+
+        return writer.toByteArray();
+    }
+
+    Object[] constants() {
+        return constants.toArray();
+    }
+
+    private void compile(List<ASTStatement> statements) {
+        for (ASTStatement statement : statements) {
+            statement.accept(this);
+
+            // nothing after a return runs
+            if (statement instanceof ASTStatement.Return) break;
+        }
+    }
+
+    private void compile(ASTExpression expr) {
+        expr.accept(this);
+    }
+
+    @Override
+    public Void visitBinaryASTExpression(ASTExpression.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        code.load(INTERPRETER_LOCAL);
+        constant(expr, BINARY);
+
+        String operation = switch (expr.operator.type) {
+            case PLUS -> "add";
+            case MINUS -> "subtract";
+            case STAR -> "multiply";
+            case SLASH -> "divide";
+            case GREATER -> "greater";
+            case GREATER_EQUAL -> "greaterEqual";
+            case LESS -> "less";
+            case LESS_EQUAL -> "lessEqual";
+            case EQUAL_EQUAL -> "equal";
+            case BANG_EQUAL -> "notEqual";
+            default -> "binary";
+        };
+
+        code.invokeStatic(RUNTIME, operation, BINARY_OPERATION);
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallASTExpression(ASTExpression.Call expr) {
+        int count = expr.arguments.size();
+
+        if (count > 4) {
+            compileCall(expr, "call");
+
+            return null;
+        }
+
+        // up to four arguments stay on the operand stack, the helper takes them as parameters
+        compileCallee(expr);
+
+        StringBuilder descriptor = new StringBuilder("(Ljava/lang/Object;");
+
+        for (ASTExpression argument : expr.arguments) {
+            compile(argument);
+
+            descriptor.append("Ljava/lang/Object;");
+        }
+
+        descriptor.append("L" + INTERPRETER + ";L" + CALL + ";)Ljava/lang/Object;");
+
+        code.load(INTERPRETER_LOCAL);
+        constant(expr, CALL);
+        code.invokeStatic(RUNTIME, "call" + count, descriptor.toString());
+
+        return null;
+    }
+
+    private void compileCallee(ASTExpression.Call expr) {
+        compile(expr.callee);
+
+        constant(expr, CALL);
+        code.invokeStatic(RUNTIME, "callable", "(Ljava/lang/Object;L" + CALL + ";)Ljava/lang/Object;");
+    }
+
+    // leaves the callee, the arguments in an array, the interpreter and the node on the stack, and calls the helper
+    private void compileCall(ASTExpression.Call expr, String helper) {
+        compileCallee(expr);
+
+        code.pushInt(expr.arguments.size());
+        code.newArray(OBJECT);
+
+        for (int i = 0; i < expr.arguments.size(); i++) {
+            code.op(ClassWriter.Code.DUP, 1);
+            code.pushInt(i);
+            compile(expr.arguments.get(i));
+            code.op(ClassWriter.Code.AASTORE, -3);
+        }
+
+        code.load(INTERPRETER_LOCAL);
+        constant(expr, CALL);
+        code.invokeStatic(RUNTIME, helper, CALL_OPERATION);
+    }
+
+    @Override
+    public Void visitGetASTExpression(ASTExpression.Get expr) {
+        throw new NotCompilable("reads a property");
+    }
+
+    @Override
+    public Void visitGroupingASTExpression(ASTExpression.Grouping expr) {
+        compile(expr.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralASTExpression(ASTExpression.Literal expr) {
+        if (expr.value == null) {
+            code.op(ClassWriter.Code.ACONST_NULL, 1);
+        } else {
+            constant(expr.value, null);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitSetASTExpression(ASTExpression.Set expr) {
+        throw new NotCompilable("sets a property");
+    }
+
+    @Override
+    public Void visitSuperASTExpression(ASTExpression.Super expr) {
+        throw new NotCompilable("uses 'super'");
+    }
+
+    @Override
+    public Void visitThisASTExpression(ASTExpression.This expr) {
+        throw new NotCompilable("uses 'this'");
+    }
+
+    @Override
+    public Void visitUnaryASTExpression(ASTExpression.Unary expr) {
+        compile(expr.right);
+
+        switch (expr.operator.type) {
+            case BANG -> code.invokeStatic(RUNTIME, "not", "(Ljava/lang/Object;)Ljava/lang/Object;");
+
+            default -> {
+                code.load(INTERPRETER_LOCAL);
+                constant(expr, UNARY);
+                code.invokeStatic(RUNTIME, "negate", "(Ljava/lang/Object;L" + INTERPRETER + ";L" + UNARY + ";)Ljava/lang/Object;");
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitVariableASTExpression(ASTExpression.Variable expr) {
+        Integer local = lookUp(expr.name, expr.depth);
+
+        if (local != null) {
+            code.load(local);
+        } else {
+            code.load(INTERPRETER_LOCAL);
+            constant(expr.name, TOKEN);
+            code.invokeStatic(RUNTIME, "global", "(L" + INTERPRETER + ";L" + TOKEN + ";)Ljava/lang/Object;");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitAssignASTExpression(ASTExpression.Assign expr) {
+        compile(expr.value);
+
+        Integer local = lookUp(expr.name, expr.depth);
+
+        if (local != null) {
+            code.op(ClassWriter.Code.DUP, 1);
+            code.store(local);
+        } else {
+            code.load(INTERPRETER_LOCAL);
+            constant(expr.name, TOKEN);
+            code.invokeStatic(RUNTIME, "assignGlobal", "(Ljava/lang/Object;L" + INTERPRETER + ";L" + TOKEN + ";)Ljava/lang/Object;");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalASTExpression(ASTExpression.Logical expr) {
+        compile(expr.left);
+
+        // the left operand is the result when it decides the outcome
+        code.op(ClassWriter.Code.DUP, 1);
+        code.invokeStatic(RUNTIME, "isTruthy", "(Ljava/lang/Object;)Z");
+
+        int end = code.jump(expr.operator.type == TokenType.OR ? ClassWriter.Code.IFNE : ClassWriter.Code.IFEQ);
+
+        code.op(ClassWriter.Code.POP, -1);
+        compile(expr.right);
+
+        code.patch(end);
+
+        return null;
+    }
+
+    // the value is computed each time, HotSpot takes care of invariant code in the compiled loop
+    @Override
+    public Void visitMemoASTExpression(ASTExpression.Memo expr) {
+        compile(expr.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBlockASTStatement(ASTStatement.Block statement) {
+        beginScope();
+
+        compile(statement.statements);
+
+        endScope();
+
+        return null;
+    }
+
+    @Override
+    public Void visitClassASTStatement(ASTStatement.Class statement) {
+        throw new NotCompilable("declares a class");
+    }
+
+    @Override
+    public Void visitExpressionASTStatement(ASTStatement.Expression statement) {
+        compile(statement.expression);
+
+        code.op(ClassWriter.Code.POP, -1);
+
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionASTStatement(ASTStatement.Function statement) {
+        throw new NotCompilable("declares a function");
+    }
+
+    @Override
+    public Void visitPrintASTStatement(ASTStatement.Print statement) {
+        compile(statement.expression);
+
+        code.load(INTERPRETER_LOCAL);
+        code.invokeStatic(RUNTIME, "print", "(Ljava/lang/Object;L" + INTERPRETER + ";)V");
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnASTStatement(ASTStatement.Return statement) {
+        if (statement.tailCall) {
+            compileCall((ASTExpression.Call) statement.value, "tailCall");
+        } else if (statement.value != null) {
+            compile(statement.value);
+        } else {
+            code.op(ClassWriter.Code.ACONST_NULL, 1);
+        }
+
+        code.op(ClassWriter.Code.ARETURN, -1);
+
+        return null;
+    }
+
+    @Override
+    public Void visitVarASTStatement(ASTStatement.Var statement) {
+        if (statement.initializer != null) {
+            compile(statement.initializer);
+        } else {
+            code.op(ClassWriter.Code.ACONST_NULL, 1);
+        }
+
+        code.store(declare(statement.name));
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileASTStatement(ASTStatement.While statement) {
+        int top = code.length();
+
+        compile(statement.condition);
+        code.invokeStatic(RUNTIME, "isTruthy", "(Ljava/lang/Object;)Z");
+
+        int exit = code.jump(ClassWriter.Code.IFEQ);
+
+        statement.body.accept(this);
+
+        code.jumpBack(ClassWriter.Code.GOTO, top);
+        code.patch(exit);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfASTStatement(ASTStatement.If statement) {
+        compile(statement.condition);
+        code.invokeStatic(RUNTIME, "isTruthy", "(Ljava/lang/Object;)Z");
+
+        int elseBranch = code.jump(ClassWriter.Code.IFEQ);
+
+        statement.thenBranch.accept(this);
+
+        if (statement.elseBranch == null) {
+            code.patch(elseBranch);
+
+            return null;
+        }
+
+        int end = code.jump(ClassWriter.Code.GOTO);
+
+        code.patch(elseBranch);
+
+        statement.elseBranch.accept(this);
+
+        code.patch(end);
+
+        return null;
+    }
+
+    // loads constants[index], cast to the given class unless it is null
+    private void constant(Object value, String type) {
+        constants.add(value);
+
+        code.load(CONSTANTS_LOCAL);
+        code.pushInt(constants.size() - 1);
+        code.op(ClassWriter.Code.AALOAD, -1);
+
+        if (type != null) code.checkCast(type);
+    }
+
+    private void beginScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void endScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    // every declaration gets a JVM local of its own, the blocks of a function rarely declare many
+    private int declare(Token name) {
+        if (nextLocal == MAX_LOCALS) throw new NotCompilable("has too many locals");
+
+        int local = nextLocal++;
+
+        scopes.get(scopes.size() - 1).put(name.lexeme, local);
+
+        return local;
+    }
+
+    // returns null for a global, a local of an enclosing function can't be reached from compiled code
+    private Integer lookUp(Token name, int depth) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Integer local = scopes.get(i).get(name.lexeme);
+
+            if (local != null) return local;
+        }
+
+        if (depth != Environment.GLOBAL) throw new NotCompilable("captures '" + name.lexeme + "'");
+
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.yassenhigazi.jlox.JIT;
+
+import com.yassenhigazi.jlox.Errors.NotCompilable;
+import com.yassenhigazi.jlox.Interpreter.CompiledFunction;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The second tier of the tree-walking interpreter. Functions start out interpreted while LoxFunction counts their
+ * calls and the loop iterations they run; once either count passes its threshold the function is handed to a
+ * background thread, which compiles its body to JVM bytecode and defines it as a hidden class. The next call runs the
+ * compiled code, calls already running carry on in the interpreter. A function the compiler can't handle stays
+ * interpreted for good.
+ */
+public class JIT {
+    public static final int INVOCATION_THRESHOLD = 1000;
+    public static final int BACK_EDGE_THRESHOLD = 10000;
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private final ExecutorService compiler = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jlox-jit");
+
+        // a compilation still running when the program ends is dropped
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final boolean debug;
+
+    public JIT(boolean debug) {
+        this.debug = debug;
+    }
+
+    // called on every interpreted call of a plain function, the counters live on the declaration shared by its closures
+    public void profile(ASTStatement.Function function) {
+        if (function.queued) return;
+
+        function.invocations++;
+
+        if (function.invocations < INVOCATION_THRESHOLD && function.backEdges < BACK_EDGE_THRESHOLD) return;
+
+        function.queued = true;
+
+        compiler.execute(() -> compile(function));
+    }
+
+    private void compile(ASTStatement.Function function) {
+        try {
+            FunctionCompiler functionCompiler = new FunctionCompiler(function);
+
+            byte[] bytes = functionCompiler.compile();
+
+            Class<?> body = lookup.defineHiddenClass(bytes, true).lookupClass();
+
+            Object[] constants = functionCompiler.constants();
+
+            function.compiled = (CompiledFunction) body.getConstructor(Object[].class).newInstance((Object) constants);
+
+            if (debug) System.err.println("[jit] compiled " + function.name.lexeme);
+        } catch (NotCompilable e) {
+            if (debug) System.err.println("[jit] left " + function.name.lexeme + " to the interpreter, it " + e.getMessage());
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException | StackOverflowError e) {
+            // a class the JVM rejects, or a bug in the compiler, leaves the function interpreted as well. it stays
+            // queued, so it is never handed to the compiler again
+            if (debug) System.err.println("[jit] failed to compile " + function.name.lexeme + ": " + e);
+        }
+    }
+}
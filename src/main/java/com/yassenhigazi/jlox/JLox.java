@@ -1,44 +1,127 @@
 package com.yassenhigazi.jlox;
 
+import com.yassenhigazi.jlox.Cache.ASTCache;
+import com.yassenhigazi.jlox.Closures.ClosureEngine;
+import com.yassenhigazi.jlox.Compiler.Compiler;
+import com.yassenhigazi.jlox.Compiler.ObjFunction;
 import com.yassenhigazi.jlox.Errors.RuntimeError;
 import com.yassenhigazi.jlox.Interpreter.Interpreter;
+import com.yassenhigazi.jlox.Optimizer.ConstantFolder;
+import com.yassenhigazi.jlox.Optimizer.ExpressionMemoizer;
 import com.yassenhigazi.jlox.Parser.ASTStatement;
-import com.yassenhigazi.jlox.Parser.Parser;
+import com.yassenhigazi.jlox.Parser.IncrementalParser;
+import com.yassenhigazi.jlox.Parser.ParallelParser;
 import com.yassenhigazi.jlox.Resolver.Resolver;
-import com.yassenhigazi.jlox.Scanner.JLoxScanner;
+import com.yassenhigazi.jlox.Scanner.Source;
 import com.yassenhigazi.jlox.Scanner.Token;
 import com.yassenhigazi.jlox.Scanner.TokenType;
+import com.yassenhigazi.jlox.VM.VM;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
 import java.util.List;
 
 public class JLox {
+    private enum Engine {
+        TREE,
+        CLOSURES,
+        VM
+    }
+
     private static final Interpreter interpreter = new Interpreter();
+    private static final ClosureEngine closures = new ClosureEngine();
+    private static final VM vm = new VM();
+
+    private static Engine engine = Engine.TREE;
+    private static boolean optimize = false;
+    private static boolean jit = false;
+    private static boolean debug = false;
+    private static Path cacheDirectory = null;
+    private static boolean watch = false;
+
+    // set when a script file is run in one go, the optimizer can then see all the code a call may reach
+    private static boolean wholeProgram = false;
 
     static boolean hadError = false;
     static boolean hadRuntimeError = false;
 
+    // errors reported on a thread that holds them are kept here instead of printed, see holdErrors
+    private static final ThreadLocal<List<String>> heldErrors = new ThreadLocal<>();
+
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        List<String> scripts = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.equals("--engine=tree")) {
+                engine = Engine.TREE;
+            } else if (arg.equals("--engine=closures")) {
+                engine = Engine.CLOSURES;
+            } else if (arg.equals("--engine=vm")) {
+                engine = Engine.VM;
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.equals("--jit")) {
+                jit = true;
+            } else if (arg.equals("--debug")) {
+                debug = true;
+            } else if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.equals("--cache")) {
+                cacheDirectory = ASTCache.defaultDirectory();
+            } else if (arg.startsWith("--cache=")) {
+                cacheDirectory = Paths.get(arg.substring("--cache=".length()));
+            } else if (arg.startsWith("--")) {
+                usage();
+            } else {
+                scripts.add(arg);
+            }
+        }
+
+        // the other engines never run the tree interpreter the JIT profiles
+        if (jit && engine != Engine.TREE) {
+            System.err.println("--jit only applies to the tree engine.");
+
+            usage();
+        }
+
+        if (jit) interpreter.enableJit(debug);
+
+        if (scripts.size() > 1 || (watch && scripts.isEmpty())) {
+            usage();
+        } else if (watch) {
+            watchFile(scripts.get(0));
+        } else if (scripts.size() == 1) {
+            runFile(scripts.get(0));
         } else {
             runPrompt();
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: jlox [--engine=tree|closures|vm] [--optimize] [--jit] [--cache[=dir]] [--watch] [--debug] [script]");
+        System.exit(64);
+    }
+
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        // scanning reads straight from the mapped file, the script is never copied into a String
+        Source source = Source.map(Paths.get(path));
+
+        wholeProgram = true;
 
         try {
-            run(new String(bytes, Charset.defaultCharset()));
+            if (cacheDirectory != null && !optimize) {
+                runCached(source);
+            } else {
+                run(source);
+            }
 
         } catch (RuntimeError e) {
             error(e);
@@ -49,6 +132,68 @@ public class JLox {
         if (hadRuntimeError) System.exit(70);
     }
 
+    // runs the script, then runs again whatever changed each time the file is saved, until the process is stopped
+    private static void watchFile(String path) throws IOException {
+        Path file = Paths.get(path).toAbsolutePath();
+
+        IncrementalParser parser = new IncrementalParser();
+
+        reload(parser, file);
+
+        try (WatchService watcher = file.getFileSystem().newWatchService()) {
+            // files are watched through their directory, editors often save by replacing the file
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            for (; ; ) {
+                WatchKey key = watcher.take();
+
+                boolean changed = false;
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) changed = true;
+                }
+
+                key.reset();
+
+                if (changed) reload(parser, file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reload(IncrementalParser parser, Path file) {
+        long start = System.nanoTime();
+
+        try {
+            // read rather than mapped, the editor may truncate the file while it is still being scanned
+            Source source = Source.read(file);
+
+            List<ASTStatement> statements = analyze(parser.parse(source));
+
+            if (statements != null) {
+                parser.accept();
+
+                execute(statements);
+            }
+        } catch (IOException e) {
+            // a file being replaced can be missing for a moment, the event for its new version follows
+            if (debug) System.err.println("[watch] could not read " + file + ": " + e.getMessage());
+
+            return;
+        } catch (RuntimeError e) {
+            error(e);
+        }
+
+        if (debug) {
+            System.err.printf("[watch] parsed %d of %d parts in %.1f ms%n", parser.parsed(), parser.total(), (System.nanoTime() - start) / 1e6);
+        }
+
+        // reset error flags so watching doesn't end
+        hadError = false;
+        hadRuntimeError = false;
+    }
+
     private static void runPrompt() throws IOException {
         for (; ; ) {
             System.out.print("jlox> ");
@@ -58,7 +203,7 @@ public class JLox {
             if (line == null) break;
 
             try {
-                run(line);
+                run(Source.of(line));
             } catch (RuntimeError e) {
                 error(e);
             }
@@ -94,24 +239,89 @@ public class JLox {
         return source.toString();
     }
 
-    private static void run(String source) {
-        JLoxScanner scanner = new JLoxScanner(source);
+    // skips straight to running when the tree of this exact source was stored by an earlier run
+    private static void runCached(Source source) {
+        ASTCache cache = new ASTCache(cacheDirectory, debug);
+
+        byte[] hash = source.hash();
 
-        List<Token> tokens = scanner.scanTokens();
+        List<ASTStatement> statements = cache.load(hash);
 
-        Parser parser = new Parser(tokens);
+        if (statements == null) {
+            statements = resolve(source);
 
-        List<ASTStatement> statements = parser.parse();
+            // a script with errors is never stored, it gets reported again on the next run
+            if (statements == null) return;
 
+            cache.store(hash, statements);
+        }
+
+        execute(statements);
+    }
+
+    private static void run(Source source) {
+        List<ASTStatement> statements = resolve(source);
+
+        if (statements != null) execute(statements);
+    }
+
+    // returns null when the script has errors
+    private static List<ASTStatement> resolve(Source source) {
+        // the parser pulls tokens from the scanner as it goes, so the whole token list never exists at once, and a
+        // large script is cut into parts parsed side by side
+        return analyze(ParallelParser.parse(source));
+    }
+
+    // optimizes and resolves parsed statements, returns null when the script has errors
+    private static List<ASTStatement> analyze(List<ASTStatement> statements) {
         // Stop if there was a syntax error.
-        if (hadError) return;
+        if (hadError) return null;
+
+        if (optimize) {
+            // the folder drops dead branches and unused locals, so the whole program is checked before it does, an
+            // error in code that never runs is still reported
+            new Resolver().resolve(statements);
+
+            if (hadError) return null;
+
+            statements = new ConstantFolder().fold(statements);
+
+            ExpressionMemoizer memoizer = new ExpressionMemoizer();
 
-        Resolver resolver = new Resolver(interpreter);
+            statements = memoizer.memoize(statements, wholeProgram);
+
+            if (debug) {
+                System.err.println("[optimizer] hoisted " + memoizer.hoisted() + " expressions out of loops, reused " + memoizer.reused() + " repeated expressions");
+            }
+        }
+
+        Resolver resolver = new Resolver();
 
         resolver.resolve(statements);
 
         // Stop if there was a resolution error.
-        if (hadError) return;
+        if (hadError) return null;
+
+        return statements;
+    }
+
+    private static void execute(List<ASTStatement> statements) {
+        if (engine == Engine.VM) {
+            ObjFunction script = new Compiler().compile(statements);
+
+            // Stop if there was a compile error.
+            if (hadError) return;
+
+            vm.interpret(script);
+
+            return;
+        }
+
+        if (engine == Engine.CLOSURES) {
+            closures.interpret(statements);
+
+            return;
+        }
 
         interpreter.interpret(statements);
     }
@@ -132,6 +342,24 @@ public class JLox {
         }
     }
 
+    // the errors this thread reports go into the list until releaseErrors, so parts parsed on other threads can be
+    // reported in source order once they are all done
+    public static void holdErrors(List<String> errors) {
+        heldErrors.set(errors);
+    }
+
+    public static void releaseErrors() {
+        heldErrors.remove();
+    }
+
+    public static void printErrors(List<String> errors) {
+        for (String error : errors) {
+            System.err.println(error);
+
+            hadError = true;
+        }
+    }
+
     public static void runtimeError(RuntimeError error) {
         System.err.println("\n[line " + error.token.line + "] " + error.getMessage());
 
@@ -159,7 +387,13 @@ public class JLox {
 
         m += message;
 
-        System.err.println(m);
+        List<String> held = heldErrors.get();
+
+        if (held != null) {
+            held.add(m);
+        } else {
+            System.err.println(m);
+        }
 
         hadError = true;
     }
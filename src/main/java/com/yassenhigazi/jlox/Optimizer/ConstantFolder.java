@@ -0,0 +1,391 @@
+package com.yassenhigazi.jlox.Optimizer;
+
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Scanner.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites a checked program before it is resolved again for running: operators whose operands are all literals are replaced by their
+ * value, branches and loops guarded by a literal condition are pruned, statements after a return are dropped and so
+ * are locals that nothing names and whose initializer can't fail. Anything that would raise an error, like dividing by
+ * zero or comparing a number with a string, is left in place so the error still happens at runtime.
+ */
+public class ConstantFolder implements ASTExpression.Visitor<ASTExpression>, ASTStatement.Visitor<ASTStatement> {
+
+    // returned by binary when the operation has to be left for the interpreter
+    private static final Object UNFOLDABLE = new Object();
+
+    // names read or assigned in the scope being folded and in the scopes inside it
+    private Set<String> referenced = new HashSet<>();
+
+    public List<ASTStatement> fold(List<ASTStatement> statements) {
+        return fold(statements, false);
+    }
+
+    private List<ASTStatement> fold(List<ASTStatement> statements, boolean local) {
+        Set<String> enclosing = referenced;
+
+        referenced = new HashSet<>();
+
+        List<ASTStatement> folded = new ArrayList<>();
+
+        for (ASTStatement statement : statements) {
+            ASTStatement result = fold(statement);
+
+            if (result == null) continue;
+
+            folded.add(result);
+
+            // nothing after a return runs
+            if (result instanceof ASTStatement.Return) break;
+        }
+
+        // globals stay, they can be named by code that comes later
+        if (local) {
+            // the program was resolved before folding, so dropping a local can't hide an error the resolver reports
+            folded.removeIf(this::isUnusedLocal);
+        }
+
+        enclosing.addAll(referenced);
+
+        referenced = enclosing;
+
+        return folded;
+    }
+
+    // returns null when the statement does nothing
+    private ASTStatement fold(ASTStatement statement) {
+        return statement.accept(this);
+    }
+
+    private ASTExpression fold(ASTExpression expr) {
+        return expr.accept(this);
+    }
+
+    @Override
+    public ASTExpression visitBinaryASTExpression(ASTExpression.Binary expr) {
+        ASTExpression left = fold(expr.left);
+        ASTExpression right = fold(expr.right);
+
+        if (left instanceof ASTExpression.Literal && right instanceof ASTExpression.Literal) {
+            Object value = binary(expr.operator.type, ((ASTExpression.Literal) left).value, ((ASTExpression.Literal) right).value);
+
+            if (value != UNFOLDABLE) return new ASTExpression.Literal(value, expr.operator);
+        }
+
+        return new ASTExpression.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public ASTExpression visitCallASTExpression(ASTExpression.Call expr) {
+        List<ASTExpression> arguments = new ArrayList<>();
+
+        for (ASTExpression argument : expr.arguments) {
+            arguments.add(fold(argument));
+        }
+
+        return new ASTExpression.Call(fold(expr.callee), expr.paren, arguments);
+    }
+
+    @Override
+    public ASTExpression visitGetASTExpression(ASTExpression.Get expr) {
+        return new ASTExpression.Get(fold(expr.object), expr.name);
+    }
+
+    @Override
+    public ASTExpression visitGroupingASTExpression(ASTExpression.Grouping expr) {
+        ASTExpression expression = fold(expr.expression);
+
+        if (expression instanceof ASTExpression.Literal) return expression;
+
+        return new ASTExpression.Grouping(expression);
+    }
+
+    @Override
+    public ASTExpression visitLiteralASTExpression(ASTExpression.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTExpression visitSetASTExpression(ASTExpression.Set expr) {
+        return new ASTExpression.Set(fold(expr.object), expr.name, fold(expr.value));
+    }
+
+    @Override
+    public ASTExpression visitSuperASTExpression(ASTExpression.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTExpression visitThisASTExpression(ASTExpression.This expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTExpression visitUnaryASTExpression(ASTExpression.Unary expr) {
+        ASTExpression right = fold(expr.right);
+
+        if (right instanceof ASTExpression.Literal) {
+            Object value = ((ASTExpression.Literal) right).value;
+
+            if (expr.operator.type == TokenType.BANG) return new ASTExpression.Literal(!isTruthy(value), expr.operator);
+
+            if (expr.operator.type == TokenType.MINUS && value instanceof Double) {
+                return new ASTExpression.Literal(-(double) value, expr.operator);
+            }
+        }
+
+        return new ASTExpression.Unary(expr.operator, right);
+    }
+
+    @Override
+    public ASTExpression visitVariableASTExpression(ASTExpression.Variable expr) {
+        referenced.add(expr.name.lexeme);
+
+        return expr;
+    }
+
+    @Override
+    public ASTExpression visitAssignASTExpression(ASTExpression.Assign expr) {
+        referenced.add(expr.name.lexeme);
+
+        return new ASTExpression.Assign(expr.name, fold(expr.value));
+    }
+
+    @Override
+    public ASTExpression visitLogicalASTExpression(ASTExpression.Logical expr) {
+        ASTExpression left = fold(expr.left);
+        ASTExpression right = fold(expr.right);
+
+        // the result is the left operand when it decides the outcome, the right one otherwise
+        if (left instanceof ASTExpression.Literal) {
+            boolean truthy = isTruthy(((ASTExpression.Literal) left).value);
+
+            if (expr.operator.type == TokenType.OR) return truthy ? left : right;
+
+            return truthy ? right : left;
+        }
+
+        return new ASTExpression.Logical(left, expr.operator, right);
+    }
+
+    @Override
+    public ASTExpression visitMemoASTExpression(ASTExpression.Memo expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTStatement visitBlockASTStatement(ASTStatement.Block statement) {
+        return new ASTStatement.Block(fold(statement.statements, true));
+    }
+
+    @Override
+    public ASTStatement visitClassASTStatement(ASTStatement.Class statement) {
+        if (statement.superclass != null) referenced.add(statement.superclass.name.lexeme);
+
+        List<ASTStatement.Function> methods = new ArrayList<>();
+
+        for (ASTStatement.Function method : statement.methods) {
+            methods.add((ASTStatement.Function) fold(method));
+        }
+
+        return new ASTStatement.Class(statement.name, statement.superclass, methods);
+    }
+
+    @Override
+    public ASTStatement visitExpressionASTStatement(ASTStatement.Expression statement) {
+        ASTExpression expression = fold(statement.expression);
+
+        if (isPure(expression)) return null;
+
+        return new ASTStatement.Expression(expression);
+    }
+
+    @Override
+    public ASTStatement visitFunctionASTStatement(ASTStatement.Function statement) {
+        return new ASTStatement.Function(statement.name, statement.params, fold(statement.body, true));
+    }
+
+    @Override
+    public ASTStatement visitPrintASTStatement(ASTStatement.Print statement) {
+        return new ASTStatement.Print(fold(statement.expression));
+    }
+
+    @Override
+    public ASTStatement visitReturnASTStatement(ASTStatement.Return statement) {
+        if (statement.value == null) return statement;
+
+        return new ASTStatement.Return(statement.keyword, fold(statement.value));
+    }
+
+    @Override
+    public ASTStatement visitVarASTStatement(ASTStatement.Var statement) {
+        if (statement.initializer == null) return statement;
+
+        return new ASTStatement.Var(statement.name, fold(statement.initializer));
+    }
+
+    @Override
+    public ASTStatement visitWhileASTStatement(ASTStatement.While statement) {
+        ASTExpression condition = fold(statement.condition);
+
+        if (condition instanceof ASTExpression.Literal && !isTruthy(((ASTExpression.Literal) condition).value)) {
+            return null;
+        }
+
+        return new ASTStatement.While(condition, branch(statement.body));
+    }
+
+    @Override
+    public ASTStatement visitIfASTStatement(ASTStatement.If statement) {
+        ASTExpression condition = fold(statement.condition);
+
+        if (condition instanceof ASTExpression.Literal) {
+            if (isTruthy(((ASTExpression.Literal) condition).value)) return fold(statement.thenBranch);
+
+            if (statement.elseBranch == null) return null;
+
+            return fold(statement.elseBranch);
+        }
+
+        ASTStatement elseBranch = null;
+
+        if (statement.elseBranch != null) elseBranch = fold(statement.elseBranch);
+
+        return new ASTStatement.If(condition, branch(statement.thenBranch), elseBranch);
+    }
+
+    // the body of a loop or the then branch of an if can't be left out, one that folds away becomes an empty block
+    private ASTStatement branch(ASTStatement statement) {
+        ASTStatement folded = fold(statement);
+
+        if (folded == null) return new ASTStatement.Block(new ArrayList<>());
+
+        return folded;
+    }
+
+    private boolean isUnusedLocal(ASTStatement statement) {
+        if (!(statement instanceof ASTStatement.Var)) return false;
+
+        ASTStatement.Var var = (ASTStatement.Var) statement;
+
+        if (referenced.contains(var.name.lexeme)) return false;
+
+        return var.initializer == null || isPure(var.initializer);
+    }
+
+    // whether evaluating the expression can neither fail nor change anything
+    private boolean isPure(ASTExpression expr) {
+        if (expr instanceof ASTExpression.Literal) return true;
+
+        if (expr instanceof ASTExpression.Grouping) return isPure(((ASTExpression.Grouping) expr).expression);
+
+        if (expr instanceof ASTExpression.Unary) {
+            ASTExpression.Unary unary = (ASTExpression.Unary) expr;
+
+            return unary.operator.type == TokenType.BANG && isPure(unary.right);
+        }
+
+        if (expr instanceof ASTExpression.Logical) {
+            ASTExpression.Logical logical = (ASTExpression.Logical) expr;
+
+            return isPure(logical.left) && isPure(logical.right);
+        }
+
+        return false;
+    }
+
+    // mirrors the operators of the interpreter for the operand types it accepts
+    private Object binary(TokenType operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            double a = (double) left;
+            double b = (double) right;
+
+            switch (operator) {
+                case GREATER:
+                    return a > b;
+                case GREATER_EQUAL:
+                    return a >= b;
+                case LESS:
+                    return a < b;
+                case LESS_EQUAL:
+                    return a <= b;
+                case EQUAL_EQUAL:
+                    return a == b;
+                case BANG_EQUAL:
+                    return a != b;
+                case MINUS:
+                    return a - b;
+                case PLUS:
+                    return a + b;
+                case STAR:
+                    return a * b;
+                case SLASH:
+                    // division by zero has to raise its error when the program runs
+                    if (a == 0.0 || b == 0.0) return UNFOLDABLE;
+
+                    return a / b;
+            }
+
+            return UNFOLDABLE;
+        }
+
+        if (left instanceof String && right instanceof String) {
+            int comparison = ((String) left).compareTo((String) right);
+
+            switch (operator) {
+                case GREATER:
+                    return comparison > 0;
+                case GREATER_EQUAL:
+                    return comparison >= 0;
+                case LESS:
+                    return comparison < 0;
+                case LESS_EQUAL:
+                    return comparison <= 0;
+                case EQUAL_EQUAL:
+                    return comparison == 0;
+                case BANG_EQUAL:
+                    return comparison != 0;
+                case PLUS:
+                    return left + (String) right;
+            }
+
+            return UNFOLDABLE;
+        }
+
+        if (operator == TokenType.PLUS && (left instanceof String || right instanceof String)) {
+            return stringify(left) + stringify(right);
+        }
+
+        return UNFOLDABLE;
+    }
+
+    private boolean isTruthy(Object object) {
+        if (object == null) return false;
+
+        if (object instanceof Boolean) return (boolean) object;
+
+        return true;
+    }
+
+    private String stringify(Object object) {
+        if (object == null) return "nil";
+
+        if (object instanceof Double) {
+            String text = object.toString();
+
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+
+            return text;
+        }
+
+        return object.toString();
+    }
+}
@@ -0,0 +1,230 @@
+package com.yassenhigazi.jlox.Optimizer;
+
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+import com.yassenhigazi.jlox.Scanner.Token;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What running a piece of code can change: the variables it assigns, the names it declares, the properties it sets and
+ * whether it calls anything. Names are compared by lexeme only, so a local that shadows another counts for both, which
+ * errs on the side of treating more as changed. Function and method bodies found inside are included as well.
+ */
+class Effects implements ASTExpression.Visitor<Void>, ASTStatement.Visitor<Void> {
+    private final Set<String> assigned = new HashSet<>();
+    private final Set<String> declared = new HashSet<>();
+    private final Set<String> properties = new HashSet<>();
+    private boolean calls = false;
+
+    static Effects of(List<ASTStatement> statements) {
+        Effects effects = new Effects();
+
+        for (ASTStatement statement : statements) {
+            statement.accept(effects);
+        }
+
+        return effects;
+    }
+
+    static Effects of(ASTStatement statement) {
+        Effects effects = new Effects();
+
+        statement.accept(effects);
+
+        return effects;
+    }
+
+    boolean assigns(String name) {
+        return assigned.contains(name);
+    }
+
+    boolean declares(String name) {
+        return declared.contains(name);
+    }
+
+    boolean setsProperty(String name) {
+        return properties.contains(name);
+    }
+
+    // a call can run any code, so it may change globals, captured locals and any property
+    boolean calls() {
+        return calls;
+    }
+
+    private void visit(ASTExpression expr) {
+        if (expr != null) expr.accept(this);
+    }
+
+    private void visit(ASTStatement statement) {
+        if (statement != null) statement.accept(this);
+    }
+
+    private void visitAll(List<? extends ASTStatement> statements) {
+        for (ASTStatement statement : statements) {
+            visit(statement);
+        }
+    }
+
+    @Override
+    public Void visitBinaryASTExpression(ASTExpression.Binary expr) {
+        visit(expr.left);
+        visit(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallASTExpression(ASTExpression.Call expr) {
+        calls = true;
+
+        visit(expr.callee);
+
+        for (ASTExpression argument : expr.arguments) {
+            visit(argument);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitGetASTExpression(ASTExpression.Get expr) {
+        visit(expr.object);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingASTExpression(ASTExpression.Grouping expr) {
+        visit(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralASTExpression(ASTExpression.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitSetASTExpression(ASTExpression.Set expr) {
+        properties.add(expr.name.lexeme);
+
+        visit(expr.object);
+        visit(expr.value);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSuperASTExpression(ASTExpression.Super expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitThisASTExpression(ASTExpression.This expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryASTExpression(ASTExpression.Unary expr) {
+        visit(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableASTExpression(ASTExpression.Variable expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitAssignASTExpression(ASTExpression.Assign expr) {
+        assigned.add(expr.name.lexeme);
+
+        visit(expr.value);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalASTExpression(ASTExpression.Logical expr) {
+        visit(expr.left);
+        visit(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitMemoASTExpression(ASTExpression.Memo expr) {
+        visit(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockASTStatement(ASTStatement.Block statement) {
+        visitAll(statement.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitClassASTStatement(ASTStatement.Class statement) {
+        declared.add(statement.name.lexeme);
+
+        visitAll(statement.methods);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionASTStatement(ASTStatement.Expression statement) {
+        visit(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionASTStatement(ASTStatement.Function statement) {
+        declared.add(statement.name.lexeme);
+
+        for (Token param : statement.params) {
+            declared.add(param.lexeme);
+        }
+
+        visitAll(statement.body);
+
+        return null;
+    }
+
+    @Override
+    public Void visitPrintASTStatement(ASTStatement.Print statement) {
+        visit(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnASTStatement(ASTStatement.Return statement) {
+        visit(statement.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarASTStatement(ASTStatement.Var statement) {
+        declared.add(statement.name.lexeme);
+
+        visit(statement.initializer);
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileASTStatement(ASTStatement.While statement) {
+        visit(statement.condition);
+        visit(statement.body);
+        return null;
+    }
+
+    @Override
+    public Void visitIfASTStatement(ASTStatement.If statement) {
+        visit(statement.condition);
+        visit(statement.thenBranch);
+        visit(statement.elseBranch);
+        return null;
+    }
+}
@@ -0,0 +1,469 @@
+package com.yassenhigazi.jlox.Optimizer;
+
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * Wraps expressions whose value can be reused in Memo nodes.
+ *
+ * An expression inside a while loop that reads nothing the loop can change is hoisted: the interpreter computes it
+ * the first time the loop reaches it and reuses the value until the loop is entered again. An expression that shows up
+ * more than once in a statement that can't change anything in between is computed by its first occurrence and read
+ * back by the others. In both cases the first evaluation happens where it always did, so errors are raised at the same
+ * point as without the pass.
+ */
+public class ExpressionMemoizer implements ASTExpression.Visitor<ASTExpression>, ASTStatement.Visitor<ASTStatement> {
+
+    private static class Loop {
+        final Effects effects;
+        final List<ASTExpression.Memo> memos = new ArrayList<>();
+
+        Loop(Effects effects) {
+            this.effects = effects;
+        }
+    }
+
+    // what the whole program can change, null when only part of it is known
+    private Effects program;
+
+    // the loops around the code being rewritten, outermost first, inside the current function only
+    private Stack<Loop> loops = new Stack<>();
+
+    private int hoisted = 0;
+    private int reused = 0;
+
+    // wholeProgram is false when the statements are a prompt line or a part of a watched file, code run before or
+    // after them may be called from their loops
+    public List<ASTStatement> memoize(List<ASTStatement> statements, boolean wholeProgram) {
+        program = wholeProgram ? Effects.of(statements) : null;
+
+        return rewrite(statements);
+    }
+
+    // how many expressions were hoisted out of loops
+    public int hoisted() {
+        return hoisted;
+    }
+
+    // how many repeated expressions read back the value of an earlier one
+    public int reused() {
+        return reused;
+    }
+
+    private List<ASTStatement> rewrite(List<? extends ASTStatement> statements) {
+        List<ASTStatement> rewritten = new ArrayList<>();
+
+        for (ASTStatement statement : statements) {
+            rewritten.add(statement.accept(this));
+        }
+
+        return rewritten;
+    }
+
+    // the expression of a statement, the unit repeated subexpressions are shared in
+    private ASTExpression root(ASTExpression expr) {
+        if (expr == null) return null;
+
+        return share(rewrite(expr));
+    }
+
+    private ASTExpression rewrite(ASTExpression expr) {
+        if (isCandidate(expr)) {
+            // an expression that doesn't change in the outer loop doesn't change in the inner one either
+            for (Loop loop : loops) {
+                if (isInvariant(expr, loop.effects)) {
+                    ASTExpression.Memo memo = new ASTExpression.Memo(expr);
+
+                    loop.memos.add(memo);
+
+                    hoisted++;
+
+                    return memo;
+                }
+            }
+        }
+
+        return expr.accept(this);
+    }
+
+    // worth keeping the value of: an operation that reads at least one variable, field or "this"
+    private boolean isCandidate(ASTExpression expr) {
+        if (expr instanceof ASTExpression.Binary || expr instanceof ASTExpression.Unary || expr instanceof ASTExpression.Logical) {
+            return !isConstant(expr);
+        }
+
+        return expr instanceof ASTExpression.Get;
+    }
+
+    private boolean isConstant(ASTExpression expr) {
+        if (expr instanceof ASTExpression.Literal) return true;
+
+        if (expr instanceof ASTExpression.Grouping) return isConstant(((ASTExpression.Grouping) expr).expression);
+
+        if (expr instanceof ASTExpression.Unary) return isConstant(((ASTExpression.Unary) expr).right);
+
+        if (expr instanceof ASTExpression.Binary) {
+            ASTExpression.Binary binary = (ASTExpression.Binary) expr;
+
+            return isConstant(binary.left) && isConstant(binary.right);
+        }
+
+        if (expr instanceof ASTExpression.Logical) {
+            ASTExpression.Logical logical = (ASTExpression.Logical) expr;
+
+            return isConstant(logical.left) && isConstant(logical.right);
+        }
+
+        return false;
+    }
+
+    private boolean isInvariant(ASTExpression expr, Effects loop) {
+        if (expr instanceof ASTExpression.Literal || expr instanceof ASTExpression.This) return true;
+
+        if (expr instanceof ASTExpression.Variable) {
+            String name = ((ASTExpression.Variable) expr).name.lexeme;
+
+            if (loop.declares(name) || loop.assigns(name)) return false;
+
+            // a call may run code that assigns the variable anywhere in the program, or anywhere at all when the rest
+            // of the program isn't known
+            return !loop.calls() || (program != null && !program.assigns(name));
+        }
+
+        if (expr instanceof ASTExpression.Get) {
+            ASTExpression.Get get = (ASTExpression.Get) expr;
+
+            return !loop.calls() && !loop.setsProperty(get.name.lexeme) && isInvariant(get.object, loop);
+        }
+
+        if (expr instanceof ASTExpression.Grouping) return isInvariant(((ASTExpression.Grouping) expr).expression, loop);
+
+        if (expr instanceof ASTExpression.Unary) return isInvariant(((ASTExpression.Unary) expr).right, loop);
+
+        if (expr instanceof ASTExpression.Binary) {
+            ASTExpression.Binary binary = (ASTExpression.Binary) expr;
+
+            return isInvariant(binary.left, loop) && isInvariant(binary.right, loop);
+        }
+
+        if (expr instanceof ASTExpression.Logical) {
+            ASTExpression.Logical logical = (ASTExpression.Logical) expr;
+
+            return isInvariant(logical.left, loop) && isInvariant(logical.right, loop);
+        }
+
+        return false;
+    }
+
+    // rewrites the repeated subexpressions of a statement, as long as each one is sure to run after the one before it
+    // and nothing in the statement can change what they read
+    private ASTExpression share(ASTExpression root) {
+        // the variable only changes once the value is computed
+        if (root instanceof ASTExpression.Assign) {
+            ASTExpression.Assign assign = (ASTExpression.Assign) root;
+
+            return new ASTExpression.Assign(assign.name, share(assign.value));
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+
+        if (!count(root, counts, 1)) return root;
+
+        if (counts.values().stream().noneMatch(count -> count > 1)) return root;
+
+        return share(root, counts, new HashMap<>());
+    }
+
+    // adds delta to the count of expr and of every candidate inside it, returns false if the statement can't share values
+    private boolean count(ASTExpression expr, Map<String, Integer> counts, int delta) {
+        if (isCandidate(expr) && !(expr instanceof ASTExpression.Logical)) {
+            String key = key(expr);
+
+            if (key != null) counts.merge(key, delta, Integer::sum);
+        }
+
+        return countInside(expr, counts, delta);
+    }
+
+    private boolean countInside(ASTExpression expr, Map<String, Integer> counts, int delta) {
+        // a memo is already computed once per loop, nothing to gain from looking inside
+        if (expr instanceof ASTExpression.Literal || expr instanceof ASTExpression.Variable
+                || expr instanceof ASTExpression.This || expr instanceof ASTExpression.Memo) {
+            return true;
+        }
+
+        if (expr instanceof ASTExpression.Grouping) return count(((ASTExpression.Grouping) expr).expression, counts, delta);
+
+        if (expr instanceof ASTExpression.Get) return count(((ASTExpression.Get) expr).object, counts, delta);
+
+        if (expr instanceof ASTExpression.Unary) return count(((ASTExpression.Unary) expr).right, counts, delta);
+
+        if (expr instanceof ASTExpression.Binary) {
+            ASTExpression.Binary binary = (ASTExpression.Binary) expr;
+
+            return count(binary.left, counts, delta) && count(binary.right, counts, delta);
+        }
+
+        // calls and assignments may change what a later occurrence reads, and a logical operator may skip the first one
+        return false;
+    }
+
+    private ASTExpression share(ASTExpression expr, Map<String, Integer> counts, Map<String, ASTExpression.Memo> first) {
+        String key = isCandidate(expr) ? key(expr) : null;
+
+        if (key != null && counts.getOrDefault(key, 0) > 1) {
+            // the occurrences inside this one are never visited
+            countInside(expr, counts, -1);
+
+            ASTExpression.Memo memo = new ASTExpression.Memo(expr);
+
+            if (first.containsKey(key)) {
+                memo.source = first.get(key);
+
+                reused++;
+            } else {
+                first.put(key, memo);
+            }
+
+            return memo;
+        }
+
+        if (expr instanceof ASTExpression.Grouping) {
+            return new ASTExpression.Grouping(share(((ASTExpression.Grouping) expr).expression, counts, first));
+        }
+
+        if (expr instanceof ASTExpression.Get) {
+            ASTExpression.Get get = (ASTExpression.Get) expr;
+
+            return new ASTExpression.Get(share(get.object, counts, first), get.name);
+        }
+
+        if (expr instanceof ASTExpression.Unary) {
+            ASTExpression.Unary unary = (ASTExpression.Unary) expr;
+
+            return new ASTExpression.Unary(unary.operator, share(unary.right, counts, first));
+        }
+
+        if (expr instanceof ASTExpression.Binary) {
+            ASTExpression.Binary binary = (ASTExpression.Binary) expr;
+
+            ASTExpression left = share(binary.left, counts, first);
+            ASTExpression right = share(binary.right, counts, first);
+
+            return new ASTExpression.Binary(left, binary.operator, right);
+        }
+
+        return expr;
+    }
+
+    // two expressions with the same key compute the same value when nothing changes in between, null if it can't be compared
+    private String key(ASTExpression expr) {
+        if (expr instanceof ASTExpression.Literal) {
+            Object value = ((ASTExpression.Literal) expr).value;
+
+            // tagged by type, so nil, a string and a number that print the same don't share a key, and none of them can
+            // look like a variable
+            if (value == null) return "nil";
+
+            if (value instanceof String) return "s:" + ((String) value).length() + ":" + value;
+
+            if (value instanceof Double) return "n:" + value;
+
+            return "b:" + value;
+        }
+
+        if (expr instanceof ASTExpression.Variable) return "v:" + ((ASTExpression.Variable) expr).name.lexeme;
+
+        if (expr instanceof ASTExpression.This) return "this";
+
+        if (expr instanceof ASTExpression.Grouping) return key(((ASTExpression.Grouping) expr).expression);
+
+        if (expr instanceof ASTExpression.Get) {
+            ASTExpression.Get get = (ASTExpression.Get) expr;
+
+            String object = key(get.object);
+
+            return object == null ? null : "(. " + object + " " + get.name.lexeme + ")";
+        }
+
+        if (expr instanceof ASTExpression.Unary) {
+            ASTExpression.Unary unary = (ASTExpression.Unary) expr;
+
+            String right = key(unary.right);
+
+            return right == null ? null : "(" + unary.operator.type + " " + right + ")";
+        }
+
+        if (expr instanceof ASTExpression.Binary) {
+            ASTExpression.Binary binary = (ASTExpression.Binary) expr;
+
+            String left = key(binary.left);
+            String right = key(binary.right);
+
+            return left == null || right == null ? null : "(" + binary.operator.type + " " + left + " " + right + ")";
+        }
+
+        return null;
+    }
+
+    @Override
+    public ASTExpression visitBinaryASTExpression(ASTExpression.Binary expr) {
+        return new ASTExpression.Binary(rewrite(expr.left), expr.operator, rewrite(expr.right));
+    }
+
+    @Override
+    public ASTExpression visitCallASTExpression(ASTExpression.Call expr) {
+        List<ASTExpression> arguments = new ArrayList<>();
+
+        for (ASTExpression argument : expr.arguments) {
+            arguments.add(rewrite(argument));
+        }
+
+        // the get of a method call is never evaluated on its own
+        ASTExpression callee = expr.callee instanceof ASTExpression.Get ? expr.callee.accept(this) : rewrite(expr.callee);
+
+        return new ASTExpression.Call(callee, expr.paren, arguments);
+    }
+
+    @Override
+    public ASTExpression visitGetASTExpression(ASTExpression.Get expr) {
+        return new ASTExpression.Get(rewrite(expr.object), expr.name);
+    }
+
+    @Override
+    public ASTExpression visitGroupingASTExpression(ASTExpression.Grouping expr) {
+        return new ASTExpression.Grouping(rewrite(expr.expression));
+    }
+
+    @Override
+    public ASTExpression visitLiteralASTExpression(ASTExpression.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTExpression visitSetASTExpression(ASTExpression.Set expr) {
+        return new ASTExpression.Set(rewrite(expr.object), expr.name, rewrite(expr.value));
+    }
+
+    @Override
+    public ASTExpression visitSuperASTExpression(ASTExpression.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTExpression visitThisASTExpression(ASTExpression.This expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTExpression visitUnaryASTExpression(ASTExpression.Unary expr) {
+        return new ASTExpression.Unary(expr.operator, rewrite(expr.right));
+    }
+
+    @Override
+    public ASTExpression visitVariableASTExpression(ASTExpression.Variable expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTExpression visitAssignASTExpression(ASTExpression.Assign expr) {
+        return new ASTExpression.Assign(expr.name, rewrite(expr.value));
+    }
+
+    @Override
+    public ASTExpression visitLogicalASTExpression(ASTExpression.Logical expr) {
+        return new ASTExpression.Logical(rewrite(expr.left), expr.operator, rewrite(expr.right));
+    }
+
+    @Override
+    public ASTExpression visitMemoASTExpression(ASTExpression.Memo expr) {
+        return expr;
+    }
+
+    @Override
+    public ASTStatement visitBlockASTStatement(ASTStatement.Block statement) {
+        return new ASTStatement.Block(rewrite(statement.statements));
+    }
+
+    @Override
+    public ASTStatement visitClassASTStatement(ASTStatement.Class statement) {
+        List<ASTStatement.Function> methods = new ArrayList<>();
+
+        for (ASTStatement.Function method : statement.methods) {
+            methods.add((ASTStatement.Function) method.accept(this));
+        }
+
+        return new ASTStatement.Class(statement.name, statement.superclass, methods);
+    }
+
+    @Override
+    public ASTStatement visitExpressionASTStatement(ASTStatement.Expression statement) {
+        return new ASTStatement.Expression(root(statement.expression));
+    }
+
+    @Override
+    public ASTStatement visitFunctionASTStatement(ASTStatement.Function statement) {
+        // the body runs in its own call, the loops around the declaration don't repeat it
+        Stack<Loop> enclosing = loops;
+
+        loops = new Stack<>();
+
+        List<ASTStatement> body = rewrite(statement.body);
+
+        loops = enclosing;
+
+        return new ASTStatement.Function(statement.name, statement.params, body);
+    }
+
+    @Override
+    public ASTStatement visitPrintASTStatement(ASTStatement.Print statement) {
+        return new ASTStatement.Print(root(statement.expression));
+    }
+
+    @Override
+    public ASTStatement visitReturnASTStatement(ASTStatement.Return statement) {
+        return new ASTStatement.Return(statement.keyword, root(statement.value));
+    }
+
+    @Override
+    public ASTStatement visitVarASTStatement(ASTStatement.Var statement) {
+        return new ASTStatement.Var(statement.name, root(statement.initializer));
+    }
+
+    @Override
+    public ASTStatement visitWhileASTStatement(ASTStatement.While statement) {
+        Loop loop = new Loop(Effects.of(statement));
+
+        loops.push(loop);
+
+        ASTExpression condition = root(statement.condition);
+        ASTStatement body = statement.body.accept(this);
+
+        loops.pop();
+
+        ASTStatement.While rewritten = new ASTStatement.While(condition, body);
+
+        for (ASTExpression.Memo memo : loop.memos) {
+            memo.loop = rewritten;
+        }
+
+        return rewritten;
+    }
+
+    @Override
+    public ASTStatement visitIfASTStatement(ASTStatement.If statement) {
+        ASTExpression condition = root(statement.condition);
+        ASTStatement thenBranch = statement.thenBranch.accept(this);
+        ASTStatement elseBranch = null;
+
+        if (statement.elseBranch != null) elseBranch = statement.elseBranch.accept(this);
+
+        return new ASTStatement.If(condition, thenBranch, elseBranch);
+    }
+}
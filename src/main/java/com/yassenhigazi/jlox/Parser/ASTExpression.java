@@ -1,5 +1,7 @@
 package com.yassenhigazi.jlox.Parser;
 
+import com.yassenhigazi.jlox.Interpreter.InlineCache;
+import com.yassenhigazi.jlox.Interpreter.SuperCache;
 import com.yassenhigazi.jlox.Scanner.Token;
 
 import java.util.List;
@@ -31,12 +33,15 @@ public abstract class ASTExpression {
         R visitAssignASTExpression(Assign expr);
 
         R visitLogicalASTExpression(Logical expr);
+
+        R visitMemoASTExpression(Memo expr);
     }
 
     public static class Binary extends ASTExpression {
         public final ASTExpression left;
         public final Token operator;
         public final ASTExpression right;
+        public Specialization specialization = Specialization.UNINITIALIZED;
         public Binary(ASTExpression left, Token operator, ASTExpression right) {
             this.left = left;
             this.operator = operator;
@@ -53,6 +58,7 @@ public abstract class ASTExpression {
         public final ASTExpression callee;
         public final Token paren;
         public final List<ASTExpression> arguments;
+        public boolean arityChecked;
         public Call(ASTExpression callee, Token paren, List<ASTExpression> arguments) {
             this.callee = callee;
             this.paren = paren;
@@ -68,6 +74,7 @@ public abstract class ASTExpression {
     public static class Get extends ASTExpression {
         public final ASTExpression object;
         public final Token name;
+        public InlineCache cache;
 
         public Get(ASTExpression object, Token name) {
             this.object = object;
@@ -95,9 +102,11 @@ public abstract class ASTExpression {
 
     public static class Literal extends ASTExpression {
         public final Object value;
+        public final Token token;
 
-        public Literal(Object value) {
+        public Literal(Object value, Token token) {
             this.value = value;
+            this.token = token;
         }
 
         @Override
@@ -110,6 +119,7 @@ public abstract class ASTExpression {
         public final ASTExpression object;
         public final Token name;
         public final ASTExpression value;
+        public InlineCache cache;
         public Set(ASTExpression object, Token name, ASTExpression value) {
             this.object = object;
             this.name = name;
@@ -125,6 +135,9 @@ public abstract class ASTExpression {
     public static class Super extends ASTExpression {
         public final Token keyword;
         public final Token method;
+        public int depth;
+        public int slot;
+        public SuperCache cache;
 
         public Super(Token keyword, Token method) {
             this.keyword = keyword;
@@ -140,6 +153,8 @@ public abstract class ASTExpression {
     public static class This extends ASTExpression {
 
         public final Token keyword;
+        public int depth;
+        public int slot;
 
         public This(Token keyword) {
             this.keyword = keyword;
@@ -154,6 +169,7 @@ public abstract class ASTExpression {
     public static class Unary extends ASTExpression {
         public final Token operator;
         public final ASTExpression right;
+        public Specialization specialization = Specialization.UNINITIALIZED;
 
         public Unary(Token operator, ASTExpression right) {
             this.operator = operator;
@@ -168,6 +184,8 @@ public abstract class ASTExpression {
 
     public static class Variable extends ASTExpression {
         public final Token name;
+        public int depth;
+        public int slot;
 
         public Variable(Token name) {
             this.name = name;
@@ -182,6 +200,8 @@ public abstract class ASTExpression {
     public static class Assign extends ASTExpression {
         public final Token name;
         public final ASTExpression value;
+        public int depth;
+        public int slot;
 
         public Assign(Token name, ASTExpression value) {
             this.name = name;
@@ -209,4 +229,21 @@ public abstract class ASTExpression {
             return visitor.visitLogicalASTExpression(this);
         }
     }
+
+    public static class Memo extends ASTExpression {
+        public final ASTExpression expression;
+        public ASTStatement.While loop;
+        public ASTExpression.Memo source;
+        public Object value;
+        public long entry;
+
+        public Memo(ASTExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitMemoASTExpression(this);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.yassenhigazi.jlox.Parser;
 
+import com.yassenhigazi.jlox.Interpreter.CompiledFunction;
 import com.yassenhigazi.jlox.Scanner.Token;
 
 import java.util.List;
@@ -29,6 +30,8 @@ public abstract class ASTStatement {
 
     public static class Block extends ASTStatement {
         public final List<ASTStatement> statements;
+        public int frameSize;
+        public boolean enclosesFunctions;
 
         public Block(List<ASTStatement> statements) {
             this.statements = statements;
@@ -44,6 +47,7 @@ public abstract class ASTStatement {
         public final Token name;
         public final ASTExpression.Variable superclass;
         public final List<ASTStatement.Function> methods;
+        public int slot;
         public Class(Token name, ASTExpression.Variable superclass, List<ASTStatement.Function> methods) {
             this.name = name;
             this.superclass = superclass;
@@ -73,6 +77,13 @@ public abstract class ASTStatement {
         public final Token name;
         public final List<Token> params;
         public final List<ASTStatement> body;
+        public int slot;
+        public int frameSize;
+        public boolean enclosesFunctions;
+        public int invocations;
+        public int backEdges;
+        public boolean queued;
+        public volatile CompiledFunction compiled;
         public Function(Token name, List<Token> params, List<ASTStatement> body) {
             this.name = name;
             this.params = params;
@@ -101,6 +112,7 @@ public abstract class ASTStatement {
     public static class Return extends ASTStatement {
         public final Token keyword;
         public final ASTExpression value;
+        public boolean tailCall;
 
         public Return(Token keyword, ASTExpression value) {
             this.keyword = keyword;
@@ -117,6 +129,7 @@ public abstract class ASTStatement {
     public static class Var extends ASTStatement {
         public final Token name;
         public final ASTExpression initializer;
+        public int slot;
 
         public Var(Token name, ASTExpression initializer) {
             this.name = name;
@@ -132,6 +145,7 @@ public abstract class ASTStatement {
     public static class While extends ASTStatement {
         public final ASTExpression condition;
         public final ASTStatement body;
+        public long entry;
 
         public While(ASTExpression condition, ASTStatement body) {
             this.condition = condition;
@@ -0,0 +1,65 @@
+package com.yassenhigazi.jlox.Parser;
+
+import com.yassenhigazi.jlox.Scanner.JLoxScanner;
+import com.yassenhigazi.jlox.Scanner.Source;
+import com.yassenhigazi.jlox.Scanner.SourceSplitter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses a script that is run again and again as it is edited. The script is cut at each top-level declaration, and
+ * only the parts that weren't in the version that ran last are parsed; the definitions of the others are already
+ * there. A part is known by its text and where it starts, so one that only moved is parsed again and its errors
+ * point at its new lines.
+ */
+public class IncrementalParser {
+    // the parts of the version that ran last
+    private Set<String> parts = new HashSet<>();
+
+    // the parts of the version parsed last, they become the ones that ran once accept is called
+    private Set<String> pending = new HashSet<>();
+
+    private int total = 0;
+    private int parsed = 0;
+
+    // the statements of the parts that changed, in source order
+    public List<ASTStatement> parse(Source source) {
+        List<ASTStatement> statements = new ArrayList<>();
+
+        pending = new HashSet<>();
+        total = 0;
+        parsed = 0;
+
+        for (SourceSplitter.Part part : SourceSplitter.split(source, 0)) {
+            String key = part.line + ":" + part.column + ":" + source.text(part.start, part.end);
+
+            pending.add(key);
+            total++;
+
+            if (parts.contains(key)) continue;
+
+            JLoxScanner scanner = new JLoxScanner(source, part.start, part.end, part.line, part.column);
+
+            statements.addAll(new Parser(scanner).parse());
+            parsed++;
+        }
+
+        return statements;
+    }
+
+    // called once the statements of the last parse are run, a version with errors isn't accepted and is parsed again
+    public void accept() {
+        parts = pending;
+    }
+
+    public int total() {
+        return total;
+    }
+
+    public int parsed() {
+        return parsed;
+    }
+}
@@ -0,0 +1,82 @@
+package com.yassenhigazi.jlox.Parser;
+
+import com.yassenhigazi.jlox.JLox;
+import com.yassenhigazi.jlox.Scanner.JLoxScanner;
+import com.yassenhigazi.jlox.Scanner.Source;
+import com.yassenhigazi.jlox.Scanner.SourceSplitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses a large script on every core. SourceSplitter cuts it at top-level declarations, each part is scanned and
+ * parsed as a task of the common ForkJoinPool, and the statements are put back together in source order. The errors of
+ * a part are held until the parts before it are reported, so they come out in the same order and with the same lines
+ * as when the script is parsed in one go.
+ */
+public class ParallelParser {
+    // smaller parts cost more in tasks than they save
+    private static final int PART_LENGTH = 64 * 1024;
+
+    public static List<ASTStatement> parse(Source source) {
+        List<SourceSplitter.Part> parts = SourceSplitter.split(source, PART_LENGTH);
+
+        // a single part is parsed on this thread, with its errors printed as they are found
+        if (parts.size() == 1) return new Parser(new JLoxScanner(source)).parse();
+
+        List<PartTask> tasks = new ArrayList<>();
+
+        for (SourceSplitter.Part part : parts) {
+            tasks.add(new PartTask(source, part));
+        }
+
+        ForkJoinPool.commonPool().invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(tasks);
+
+                return null;
+            }
+        });
+
+        List<ASTStatement> statements = new ArrayList<>();
+
+        for (PartTask task : tasks) {
+            List<ASTStatement> part = task.join();
+
+            JLox.printErrors(task.errors);
+
+            statements.addAll(part);
+        }
+
+        return statements;
+    }
+
+    private static class PartTask extends RecursiveTask<List<ASTStatement>> {
+        private final Source source;
+        private final SourceSplitter.Part part;
+
+        private final List<String> errors = new ArrayList<>();
+
+        PartTask(Source source, SourceSplitter.Part part) {
+            this.source = source;
+            this.part = part;
+        }
+
+        @Override
+        protected List<ASTStatement> compute() {
+            JLox.holdErrors(errors);
+
+            try {
+                JLoxScanner scanner = new JLoxScanner(source, part.start, part.end, part.line, part.column);
+
+                return new Parser(scanner).parse();
+            } finally {
+                JLox.releaseErrors();
+            }
+        }
+    }
+}
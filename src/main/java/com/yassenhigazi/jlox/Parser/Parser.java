@@ -4,6 +4,7 @@ import com.yassenhigazi.jlox.Errors.EmptyAssignmentError;
 import com.yassenhigazi.jlox.Errors.ParseError;
 import com.yassenhigazi.jlox.JLox;
 import com.yassenhigazi.jlox.Scanner.Token;
+import com.yassenhigazi.jlox.Scanner.TokenSource;
 import com.yassenhigazi.jlox.Scanner.TokenType;
 
 import java.util.ArrayList;
@@ -11,12 +12,18 @@ import java.util.Arrays;
 import java.util.List;
 
 public class Parser {
-    private final List<Token> tokens;
-    private int current = 0;
+    // tokens are pulled from the scanner as the parser needs them, only the current token and the one before are kept
+    private final TokenSource tokens;
+    private Token current;
+    private Token previous;
 
+    public Parser(TokenSource tokens) {
+        this.tokens = tokens;
+        this.current = tokens.nextToken();
+    }
 
     public Parser(List<Token> tokens) {
-        this.tokens = tokens;
+        this(TokenSource.of(tokens));
     }
 
     public List<ASTStatement> parse() {
@@ -162,7 +169,7 @@ public class Parser {
             condition = expression();
         }
 
-        consume(TokenType.SEMICOLON, "Expect ';' after loop condition.");
+        Token semicolon = consume(TokenType.SEMICOLON, "Expect ';' after loop condition.");
 
         ASTExpression increment = null;
 
@@ -178,7 +185,7 @@ public class Parser {
             body = new ASTStatement.Block(Arrays.asList(body, new ASTStatement.Expression(increment)));
         }
 
-        if (condition == null) condition = new ASTExpression.Literal(true);
+        if (condition == null) condition = new ASTExpression.Literal(true, semicolon);
 
         body = new ASTStatement.While(condition, body);
 
@@ -403,14 +410,16 @@ public class Parser {
     }
 
     private ASTExpression primary() {
-        if (match(TokenType.FALSE)) return new ASTExpression.Literal(false);
+        if (match(TokenType.FALSE)) return new ASTExpression.Literal(false, previous());
 
-        if (match(TokenType.TRUE)) return new ASTExpression.Literal(true);
+        if (match(TokenType.TRUE)) return new ASTExpression.Literal(true, previous());
 
-        if (match(TokenType.NIL)) return new ASTExpression.Literal(null);
+        if (match(TokenType.NIL)) return new ASTExpression.Literal(null, previous());
 
         if (match(TokenType.NUMBER, TokenType.STRING)) {
-            return new ASTExpression.Literal(previous().literal);
+            Token token = previous();
+
+            return new ASTExpression.Literal(token.literal, token);
         }
 
         if (match(TokenType.SUPER)) {
@@ -493,7 +502,10 @@ public class Parser {
     }
 
     private Token advance() {
-        if (!isAtEnd()) current++;
+        if (!isAtEnd()) {
+            previous = current;
+            current = tokens.nextToken();
+        }
 
         return previous();
     }
@@ -503,11 +515,11 @@ public class Parser {
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return current;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return previous;
     }
 
 }
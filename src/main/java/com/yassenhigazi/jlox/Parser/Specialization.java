@@ -0,0 +1,33 @@
+package com.yassenhigazi.jlox.Parser;
+
+/**
+ * What an operator node has specialized itself to after seeing its first operands.
+ * A node starts UNINITIALIZED, picks the variant matching its operator and operand types on first execution,
+ * and falls back to GENERIC for good the first time its operands don't match that variant.
+ */
+public enum Specialization {
+    UNINITIALIZED,
+
+    ADD_NUMBERS,
+    SUBTRACT_NUMBERS,
+    MULTIPLY_NUMBERS,
+    DIVIDE_NUMBERS,
+    GREATER_NUMBERS,
+    GREATER_EQUAL_NUMBERS,
+    LESS_NUMBERS,
+    LESS_EQUAL_NUMBERS,
+    EQUAL_NUMBERS,
+    NOT_EQUAL_NUMBERS,
+    NEGATE_NUMBER,
+
+    CONCAT_STRINGS,
+    CONCAT_MIXED,
+    GREATER_STRINGS,
+    GREATER_EQUAL_STRINGS,
+    LESS_STRINGS,
+    LESS_EQUAL_STRINGS,
+    EQUAL_STRINGS,
+    NOT_EQUAL_STRINGS,
+
+    GENERIC
+}
@@ -1,26 +1,19 @@
 package com.yassenhigazi.jlox.Resolver;
 
-import com.yassenhigazi.jlox.Interpreter.Interpreter;
+import com.yassenhigazi.jlox.Environment.Environment;
 import com.yassenhigazi.jlox.JLox;
 import com.yassenhigazi.jlox.Parser.ASTExpression;
 import com.yassenhigazi.jlox.Parser.ASTStatement;
 import com.yassenhigazi.jlox.Scanner.Token;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Stack;
 
 public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visitor<Void> {
-    private final Interpreter interpreter;
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    private final Stack<Scope> scopes = new Stack<>();
     private ClassType currentClass = ClassType.NONE;
     private FunctionType currentFunction = FunctionType.NONE;
 
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
-    }
-
     public void resolve(List<ASTStatement> statements) {
         for (ASTStatement statement : statements) {
             resolve(statement);
@@ -50,6 +43,13 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
             resolve(argument);
         }
 
+        // calls to local functions get their argument count checked when the scope declaring the function ends
+        if (expr.callee instanceof ASTExpression.Variable) {
+            int depth = ((ASTExpression.Variable) expr.callee).depth;
+
+            if (depth != Environment.GLOBAL) scopes.get(scopes.size() - 1 - depth).call(expr);
+        }
+
         return null;
     }
 
@@ -87,14 +87,16 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
             JLox.error(expr.keyword, "Can't use 'super' in a class with no superclass.");
         }
 
-        resolveLocal(expr, expr.keyword);
-        
+        expr.depth = depthOf(expr.keyword);
+        expr.slot = slotOf(expr.keyword, expr.depth);
+
         return null;
     }
 
     @Override
     public Void visitThisASTExpression(ASTExpression.This expr) {
-        resolveLocal(expr, expr.keyword);
+        expr.depth = depthOf(expr.keyword);
+        expr.slot = slotOf(expr.keyword, expr.depth);
 
         return null;
     }
@@ -108,11 +110,12 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
     @Override
     public Void visitVariableASTExpression(ASTExpression.Variable expr) {
 
-        if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
+        if (!scopes.isEmpty() && scopes.peek().isDefined(expr.name.lexeme) == Boolean.FALSE) {
             JLox.error(expr.name, "Can't read local variable in its own initializer.");
         }
 
-        resolveLocal(expr, expr.name);
+        expr.depth = depthOf(expr.name);
+        expr.slot = slotOf(expr.name, expr.depth);
 
         return null;
     }
@@ -121,7 +124,10 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
     public Void visitAssignASTExpression(ASTExpression.Assign expr) {
         resolve(expr.value);
 
-        resolveLocal(expr, expr.name);
+        expr.depth = depthOf(expr.name);
+        expr.slot = slotOf(expr.name, expr.depth);
+
+        if (expr.depth != Environment.GLOBAL) scopes.get(scopes.size() - 1 - expr.depth).assign(expr.name.lexeme);
 
         return null;
     }
@@ -133,13 +139,20 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
         return null;
     }
 
+    @Override
+    public Void visitMemoASTExpression(ASTExpression.Memo expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
     @Override
     public Void visitBlockASTStatement(ASTStatement.Block statement) {
         beginScope();
 
         resolve(statement.statements);
 
-        endScope();
+        statement.enclosesFunctions = scopes.peek().enclosesFunctions();
+        statement.frameSize = endScope();
 
         return null;
     }
@@ -150,7 +163,9 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
 
         currentClass = ClassType.CLASS;
 
-        declare(classStatement.name);
+        classStatement.slot = declare(classStatement.name);
+
+        encloseFunction();
 
         define(classStatement.name);
 
@@ -165,13 +180,10 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
 
         if (classStatement.superclass != null) {
             beginScope();
-            scopes.peek().put("super", true);
+            scopes.peek().declare("super");
+            scopes.peek().define("super");
         }
 
-        beginScope();
-
-        scopes.peek().put("this", true);
-
         for (ASTStatement.Function method : classStatement.methods) {
             FunctionType declaration = FunctionType.METHOD;
 
@@ -182,8 +194,6 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
             resolveFunction(method, declaration);
         }
 
-        endScope();
-
         if (classStatement.superclass != null) endScope();
 
 
@@ -201,10 +211,14 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
 
     @Override
     public Void visitFunctionASTStatement(ASTStatement.Function statement) {
-        declare(statement.name);
+        statement.slot = declare(statement.name);
 
         define(statement.name);
 
+        if (!scopes.isEmpty()) scopes.peek().declareFunction(statement);
+
+        encloseFunction();
+
         resolveFunction(statement, FunctionType.FUNCTION);
 
         return null;
@@ -230,6 +244,9 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
             }
 
             resolve(statement.value);
+
+            // the interpreter runs a call in tail position in place of the current one instead of on top of it
+            statement.tailCall = statement.value instanceof ASTExpression.Call && currentFunction != FunctionType.INITIALIZER;
         }
 
         return null;
@@ -237,7 +254,7 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
 
     @Override
     public Void visitVarASTStatement(ASTStatement.Var statement) {
-        declare(statement.name);
+        statement.slot = declare(statement.name);
 
         if (statement.initializer != null) {
             resolve(statement.initializer);
@@ -268,25 +285,37 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
         return null;
     }
 
-    private void resolveLocal(ASTExpression expr, Token name) {
+    // how many scopes out the variable was declared, or GLOBAL when it is not a local
+    private int depthOf(Token name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-
-                return;
+            if (scopes.get(i).contains(name.lexeme)) {
+                return scopes.size() - 1 - i;
             }
         }
+
+        return Environment.GLOBAL;
+    }
+
+    private int slotOf(Token name, int depth) {
+        if (depth == Environment.GLOBAL) return Environment.GLOBAL;
+
+        return scopes.get(scopes.size() - 1 - depth).slot(name.lexeme);
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<>());
+        scopes.push(new Scope());
     }
 
-    private void endScope() {
-        scopes.pop();
+    // returns how many slots the runtime environment of the closed scope needs
+    private int endScope() {
+        Scope scope = scopes.pop();
+
+        scope.checkCalls();
+
+        return scope.size();
     }
 
-    private void resolveFunction(ASTStatement.Function function, @SuppressWarnings("SameParameterValue") FunctionType type) {
+    private void resolveFunction(ASTStatement.Function function, FunctionType type) {
 
         FunctionType enclosingFunction = currentFunction;
 
@@ -294,6 +323,12 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
 
         beginScope();
 
+        // methods get "this" as the first slot of their own scope, the receiver is passed in with the arguments
+        if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+            scopes.peek().declare("this");
+            scopes.peek().define("this");
+        }
+
         for (Token param : function.params) {
             declare(param);
 
@@ -302,26 +337,34 @@ public class Resolver implements ASTExpression.Visitor<Void>, ASTStatement.Visit
 
         resolve(function.body);
 
-        endScope();
+        function.enclosesFunctions = scopes.peek().enclosesFunctions();
+        function.frameSize = endScope();
 
         currentFunction = enclosingFunction;
     }
 
-    private void declare(Token name) {
-        if (scopes.isEmpty()) return;
+    // a closure made here holds on to the environments of every scope around it, so none of them may be reused
+    private void encloseFunction() {
+        for (Scope scope : scopes) {
+            scope.encloseFunction();
+        }
+    }
+
+    private int declare(Token name) {
+        if (scopes.isEmpty()) return Environment.GLOBAL;
 
-        Map<String, Boolean> scope = scopes.peek();
+        Scope scope = scopes.peek();
 
-        if (scope.containsKey(name.lexeme)) {
+        if (scope.contains(name.lexeme)) {
             JLox.error(name, "Already a variable with this name in this scope.");
         }
 
-        scope.put(name.lexeme, false);
+        return scope.declare(name.lexeme);
     }
 
     private void define(Token name) {
         if (scopes.isEmpty()) return;
 
-        scopes.peek().put(name.lexeme, true);
+        scopes.peek().define(name.lexeme);
     }
 }
@@ -0,0 +1,79 @@
+package com.yassenhigazi.jlox.Resolver;
+
+import com.yassenhigazi.jlox.Parser.ASTExpression;
+import com.yassenhigazi.jlox.Parser.ASTStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class Scope {
+    // whether the variable finished its initializer
+    private final Map<String, Boolean> defined = new HashMap<>();
+
+    // the index of the variable inside the runtime environment of this scope
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    // functions declared in this scope that nothing assigns to, and the calls that name variables of this scope
+    private final Map<String, ASTStatement.Function> functions = new HashMap<>();
+    private final List<ASTExpression.Call> calls = new ArrayList<>();
+
+    // whether a function or class declared inside the scope can keep its runtime environment alive
+    private boolean enclosesFunctions = false;
+
+    boolean contains(String name) {
+        return slots.containsKey(name);
+    }
+
+    Boolean isDefined(String name) {
+        return defined.get(name);
+    }
+
+    int declare(String name) {
+        defined.put(name, false);
+
+        return slots.computeIfAbsent(name, key -> slots.size());
+    }
+
+    void define(String name) {
+        defined.put(name, true);
+    }
+
+    void declareFunction(ASTStatement.Function function) {
+        functions.put(function.name.lexeme, function);
+    }
+
+    void assign(String name) {
+        functions.remove(name);
+    }
+
+    void call(ASTExpression.Call call) {
+        calls.add(call);
+    }
+
+    // once the whole scope is resolved no assignment can be left, so a call to one of its functions always gets that function
+    void checkCalls() {
+        for (ASTExpression.Call call : calls) {
+            ASTStatement.Function function = functions.get(((ASTExpression.Variable) call.callee).name.lexeme);
+
+            call.arityChecked = function != null && function.params.size() == call.arguments.size();
+        }
+    }
+
+    void encloseFunction() {
+        enclosesFunctions = true;
+    }
+
+    boolean enclosesFunctions() {
+        return enclosesFunctions;
+    }
+
+    int slot(String name) {
+        return slots.get(name);
+    }
+
+    int size() {
+        return slots.size();
+    }
+}
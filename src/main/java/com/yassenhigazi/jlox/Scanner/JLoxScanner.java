@@ -3,173 +3,209 @@ package com.yassenhigazi.jlox.Scanner;
 import com.yassenhigazi.jlox.JLox;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-public class JLoxScanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+public class JLoxScanner implements TokenSource {
+    private final Source source;
+    private final int end;
     private int start = 0;
     private int current = 0;
     private int line = 1;
     private int column = 0;
 
-    private static final Map<String, TokenType> keywords;
+    // the class of every byte, so the scanner makes one lookup instead of a chain of range checks
+    private static final byte OTHER = 0;
+    private static final byte DIGIT = 1;
+    private static final byte ALPHA = 2;
+    private static final byte WHITESPACE = 3;
+    private static final byte SINGLE = 4;
+    private static final byte EQUAL_FOLLOWS = 5;
+
+    private static final byte[] classes = new byte[256];
+
+    // the token of a single character, and for ! = < > the token they make when followed by =
+    private static final TokenType[] singleTokens = new TokenType[128];
+    private static final TokenType[] equalTokens = new TokenType[128];
+
+    // the powers of ten a double holds exactly
+    private static final double[] powersOfTen = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    // a mantissa of at most this many digits fits in a double without rounding
+    private static final int EXACT_DIGITS = 15;
+
+    // the text of each keyword token, shared by every token of that keyword
+    private static final String[] keywordLexemes = new String[TokenType.values().length];
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("and",    TokenType.AND);
-        keywords.put("class",  TokenType.CLASS);
-        keywords.put("else",   TokenType.ELSE);
-        keywords.put("false",  TokenType.FALSE);
-        keywords.put("for",    TokenType.FOR);
-        keywords.put("fun",    TokenType.FUN);
-        keywords.put("if",     TokenType.IF);
-        keywords.put("nil",    TokenType.NIL);
-        keywords.put("or",     TokenType.OR);
-        keywords.put("print",  TokenType.PRINT);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("super",  TokenType.SUPER);
-        keywords.put("this",   TokenType.THIS);
-        keywords.put("true",   TokenType.TRUE);
-        keywords.put("var",    TokenType.VAR);
-        keywords.put("while",  TokenType.WHILE);
+        for (TokenType type : new TokenType[]{
+                TokenType.AND, TokenType.CLASS, TokenType.ELSE, TokenType.FALSE, TokenType.FUN, TokenType.FOR,
+                TokenType.IF, TokenType.NIL, TokenType.OR, TokenType.PRINT, TokenType.RETURN, TokenType.SUPER,
+                TokenType.THIS, TokenType.TRUE, TokenType.VAR, TokenType.WHILE}) {
+            keywordLexemes[type.ordinal()] = type.name().toLowerCase();
+        }
+
+        for (int c = '0'; c <= '9'; c++) classes[c] = DIGIT;
+        for (int c = 'a'; c <= 'z'; c++) classes[c] = ALPHA;
+        for (int c = 'A'; c <= 'Z'; c++) classes[c] = ALPHA;
+        classes['_'] = ALPHA;
+
+        classes[' '] = WHITESPACE;
+        classes['\r'] = WHITESPACE;
+        classes['\t'] = WHITESPACE;
+
+        single('(', TokenType.LEFT_PAREN);
+        single(')', TokenType.RIGHT_PAREN);
+        single('{', TokenType.LEFT_BRACE);
+        single('}', TokenType.RIGHT_BRACE);
+        single(',', TokenType.COMMA);
+        single('.', TokenType.DOT);
+        single('-', TokenType.MINUS);
+        single('+', TokenType.PLUS);
+        single(';', TokenType.SEMICOLON);
+        single('*', TokenType.STAR);
+
+        equalFollows('!', TokenType.BANG, TokenType.BANG_EQUAL);
+        equalFollows('=', TokenType.EQUAL, TokenType.EQUAL_EQUAL);
+        equalFollows('<', TokenType.LESS, TokenType.LESS_EQUAL);
+        equalFollows('>', TokenType.GREATER, TokenType.GREATER_EQUAL);
+    }
+
+    private static void single(char c, TokenType type) {
+        classes[c] = SINGLE;
+        singleTokens[c] = type;
+    }
+
+    private static void equalFollows(char c, TokenType type, TokenType withEqual) {
+        classes[c] = EQUAL_FOLLOWS;
+        singleTokens[c] = type;
+        equalTokens[c] = withEqual;
     }
 
     public JLoxScanner(String source) {
+        this(Source.of(source));
+    }
+
+    public JLoxScanner(Source source) {
+        this(source, 0, source.length(), 1, 0);
+    }
+
+    // scans only the bytes from start to end, which begin at the given line and column of the whole source
+    public JLoxScanner(Source source, int start, int end, int line, int column) {
         this.source = source;
+        this.end = end;
+        this.start = start;
+        this.current = start;
+        this.line = line;
+        this.column = column;
     }
 
+    // scans the whole source up front, the parser pulls tokens one at a time through nextToken instead
     public List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+
+        Token token;
+
+        do {
+            token = nextToken();
+
+            tokens.add(token);
+        } while (token.type != TokenType.EOF);
+
+        return tokens;
+    }
+
+    // returns EOF once the source is used up, and again on every call after that
+    @Override
+    public Token nextToken() {
         while (!isAtEnd()) {
             // We are at the beginning of the next lexeme.
             start = current;
 
-            scanToken();
-        }
+            Token token = scanToken();
 
-        tokens.add(new Token(TokenType.EOF, "", null, line, column));
+            if (token != null) return token;
+        }
 
-        return tokens;
+        return new Token(TokenType.EOF, "", null, line, column);
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= end;
     }
 
-    private void scanToken() {
+    // returns null for whitespace, comments and characters that are reported as errors
+    private Token scanToken() {
         char c = advance();
 
-        switch (c) {
-            case '(':
-                addToken(TokenType.LEFT_PAREN);
-                break;
-
-            case ')':
-                addToken(TokenType.RIGHT_PAREN);
-                break;
-
-            case '{':
-                addToken(TokenType.LEFT_BRACE);
-                break;
-
-            case '}':
-                addToken(TokenType.RIGHT_BRACE);
-                break;
-
-            case ',':
-                addToken(TokenType.COMMA);
-                break;
-
-            case '.':
-                addToken(TokenType.DOT);
-                break;
-
-            case '-':
-                addToken(TokenType.MINUS);
-                break;
-
-            case '+':
-                addToken(TokenType.PLUS);
-                break;
-
-            case ';':
-                addToken(TokenType.SEMICOLON);
-                break;
+        switch (classes[c]) {
+            case WHITESPACE:
+                // Ignore whitespace.
+                return null;
 
-            case '*':
-                addToken(TokenType.STAR);
-                break;
+            case SINGLE:
+                return makeToken(singleTokens[c]);
 
             // for these cases (!, =, <, >) it can be a single char, or it can be followed by = (!=, ==, <=, >=)
-            case '!':
-                addToken(match('=') ? TokenType.BANG_EQUAL : TokenType.BANG);
-                break;
+            case EQUAL_FOLLOWS:
+                return makeToken(match('=') ? equalTokens[c] : singleTokens[c]);
 
-            case '=':
-                addToken(match('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL);
-                break;
-
-            case '<':
-                addToken(match('=') ? TokenType.LESS_EQUAL : TokenType.LESS);
-                break;
+            case DIGIT:
+                return parseNumber(c);
 
-            case '>':
-                addToken(match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER);
-                break;
+            case ALPHA:
+                return parseIdentifier();
+        }
 
+        switch (c) {
             // for the / it can be for division, or it can be followed by another / for a comment
             case '/':
                 if (match('/')) {
 
                     // A comment goes until the end of the line.
                     while (peek() != '\n' && !isAtEnd()) advance();
-                } else {
-                    addToken(TokenType.SLASH);
+
+                    return null;
                 }
 
-                break;
+                return makeToken(TokenType.SLASH);
 
             case '"':
-                parseString();
-                break;
-
-            case ' ':
-            case '\r':
-            case '\t':
-                // Ignore whitespace.
-                break;
+                return parseString();
 
             case '\n':
                 this.incrementLine();
-                break;
+                return null;
 
             default:
-                if (isDigit(c)) {
-                    parseNumber();
-                } else if (isAlpha(c)) {
-                    parseIdentifier();
-                } else {
-                    JLox.error(line, column, "SyntaxError: Unexpected character.");
-                }
-                break;
+                // a character outside ASCII is reported once, not once for each of its bytes
+                while ((peek() & 0xc0) == 0x80) advance();
+
+                JLox.error(line, column, "SyntaxError: Unexpected character.");
 
+                return null;
         }
     }
 
-    private void addToken(TokenType type) {
-        addToken(type, null);
+    private Token makeToken(TokenType type) {
+        return makeToken(type, null);
     }
 
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
+    private Token makeToken(TokenType type, Object literal) {
+        String text = source.text(start, current);
+
+        return new Token(type, text, literal, line, column);
+    }
 
-        tokens.add(new Token(type, text, literal, line, column));
+    // for tokens whose text is known without reading it back from the source
+    private Token makeToken(String text, TokenType type) {
+        return new Token(type, text, null, line, column);
     }
 
     private void incrementCurrent() {
-        column += 1;
+        // the bytes continuing a UTF-8 sequence belong to the column of the byte that started it
+        if ((source.byteAt(current) & 0xc0) != 0x80) column += 1;
 
         current++;
     }
@@ -184,7 +220,7 @@ public class JLoxScanner {
     private boolean match(char expected) {
         if (isAtEnd()) return false;
 
-        if (source.charAt(current) != expected) return false;
+        if (source.byteAt(current) != expected) return false;
 
         this.incrementCurrent();
 
@@ -194,23 +230,23 @@ public class JLoxScanner {
     private char peek() {
         if (isAtEnd()) return '\0';
 
-        return source.charAt(current);
+        return (char) source.byteAt(current);
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
+        if (current + 1 >= end) return '\0';
+        return (char) source.byteAt(current + 1);
     }
 
     private char advance() {
-        char character = source.charAt(current);
+        char character = (char) source.byteAt(current);
 
         this.incrementCurrent();
 
         return character;
     }
 
-    private void parseString() {
+    private Token parseString() {
         while (peek() != '"' && !isAtEnd()) {
 
             if (peek() == '\n') this.incrementLine();
@@ -220,58 +256,122 @@ public class JLoxScanner {
 
         if (isAtEnd()) {
             JLox.error(line, column, "Unterminated string.");
-            return;
+            return null;
         }
 
         // The closing ".
         advance();
 
         // Trim the surrounding quotes.
-        String value = source.substring(start + 1, current - 1);
+        String value = source.text(start + 1, current - 1);
 
-        addToken(TokenType.STRING, value);
+        return makeToken(TokenType.STRING, value);
     }
 
-    private void parseNumber() {
-        while (isDigit(peek())) advance();
+    // the first digit is already consumed
+    private Token parseNumber(char first) {
+        long mantissa = first - '0';
+        int digits = 1;
+        int fractionDigits = 0;
+
+        while (isDigit(peek())) {
+            mantissa = mantissa * 10 + (advance() - '0');
+            digits++;
+        }
 
         // Look for a fractional part.
         if (peek() == '.' && isDigit(peekNext())) {
             // Consume the "."
             advance();
 
-            //noinspection WhileCanBeDoWhile
-            while (isDigit(peek())) advance();
+            while (isDigit(peek())) {
+                mantissa = mantissa * 10 + (advance() - '0');
+                digits++;
+                fractionDigits++;
+            }
         }
 
-        addToken(TokenType.NUMBER, Double.parseDouble(source.substring(start, current)));
+        // with both the mantissa and the power of ten exact, a single division rounds the same way parseDouble does
+        double value = digits <= EXACT_DIGITS
+                ? mantissa / powersOfTen[fractionDigits]
+                : Double.parseDouble(source.text(start, current));
+
+        return makeToken(TokenType.NUMBER, value);
     }
 
     private boolean isDigit(char c) {
-        return c >= '0' && c <= '9';
+        return c < 128 && classes[c] == DIGIT;
     }
 
 
-    private void parseIdentifier() {
+    private Token parseIdentifier() {
         while (isAlphaNumeric(peek())) advance();
 
-        String text = source.substring(start, current);
+        TokenType type = keyword();
 
-        TokenType type = keywords.get(text);
+        if (type != null) return makeToken(keywordLexemes[type.ordinal()], type);
 
-        if (type == null) type = TokenType.IDENTIFIER;
+        return makeToken(TokenType.IDENTIFIER);
+    }
 
-        addToken(type);
+    // picks the candidate by length and first character, then compares the rest in place, so no lexeme is made first
+    private TokenType keyword() {
+        switch (current - start) {
+            case 2:
+                switch (source.byteAt(start)) {
+                    case 'i': return rest("if", TokenType.IF);
+                    case 'o': return rest("or", TokenType.OR);
+                }
+                break;
+
+            case 3:
+                switch (source.byteAt(start)) {
+                    case 'a': return rest("and", TokenType.AND);
+                    case 'f':
+                        if (source.byteAt(start + 1) == 'o') return rest("for", TokenType.FOR);
+                        return rest("fun", TokenType.FUN);
+                    case 'n': return rest("nil", TokenType.NIL);
+                    case 'v': return rest("var", TokenType.VAR);
+                }
+                break;
+
+            case 4:
+                switch (source.byteAt(start)) {
+                    case 'e': return rest("else", TokenType.ELSE);
+                    case 't':
+                        if (source.byteAt(start + 1) == 'h') return rest("this", TokenType.THIS);
+                        return rest("true", TokenType.TRUE);
+                }
+                break;
+
+            case 5:
+                switch (source.byteAt(start)) {
+                    case 'c': return rest("class", TokenType.CLASS);
+                    case 'f': return rest("false", TokenType.FALSE);
+                    case 'p': return rest("print", TokenType.PRINT);
+                    case 's': return rest("super", TokenType.SUPER);
+                    case 'w': return rest("while", TokenType.WHILE);
+                }
+                break;
+
+            case 6:
+                if (source.byteAt(start) == 'r') return rest("return", TokenType.RETURN);
+                break;
+        }
+
+        return null;
     }
 
-    // [a-z][A-Z][_]
-    private boolean isAlpha(char c) {
-        return (c >= 'a' && c <= 'z') ||
-                (c >= 'A' && c <= 'Z') ||
-                c == '_';
+    // the length and the first character already match
+    private TokenType rest(String keyword, TokenType type) {
+        for (int i = 1; i < keyword.length(); i++) {
+            if (source.byteAt(start + i) != keyword.charAt(i)) return null;
+        }
+
+        return type;
     }
 
     private boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
+        return c < 128 && (classes[c] == ALPHA || classes[c] == DIGIT);
     }
 }
@@ -0,0 +1,80 @@
+package com.yassenhigazi.jlox.Scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The UTF-8 bytes of a script. A file is memory-mapped rather than read, so nothing is copied or decoded up front;
+ * Lox syntax is all ASCII, so the scanner works on the bytes and only the text of a token is turned into a String.
+ */
+public final class Source {
+    private final ByteBuffer bytes;
+
+    private Source(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    public static Source of(String text) {
+        return new Source(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static Source map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) throw new IOException(path + " is too large to run, the limit is 2 GB.");
+
+            // the mapping stays valid after the channel is closed
+            return new Source(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    // reads the file into memory instead of mapping it, for a file that may be rewritten while its source is in use
+    public static Source read(Path path) throws IOException {
+        return new Source(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    // the SHA-256 of the bytes, a script is known by it whatever its path
+    public byte[] hash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            // a duplicate, so the position of the shared buffer stays where it is
+            digest.update(bytes.duplicate().rewind());
+
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    int length() {
+        return bytes.limit();
+    }
+
+    // the byte as an unsigned value, so anything outside ASCII is above 0x7f
+    int byteAt(int index) {
+        return bytes.get(index) & 0xff;
+    }
+
+    public String text(int start, int end) {
+        byte[] text = new byte[end - start];
+
+        bytes.get(start, text);
+
+        // most lexemes are plain ASCII, which Latin-1 decodes without looking for multi-byte sequences
+        for (byte b : text) {
+            if (b < 0) return new String(text, StandardCharsets.UTF_8);
+        }
+
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,173 @@
+package com.yassenhigazi.jlox.Scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuts a source into parts that can be scanned and parsed on their own. A part only ends right before a top-level
+ * fun or class declaration that follows a finished statement, a ; or } outside any braces or parentheses, so no
+ * statement is split. The pass only follows strings, comments and nesting, it makes no tokens, and it keeps the line
+ * and column the same way JLoxScanner does, so each part starts with the position the scanner would have there.
+ */
+public class SourceSplitter {
+    public static final class Part {
+        public final int start;
+        public final int end;
+        public final int line;
+        public final int column;
+
+        private Part(int start, int end, int line, int column) {
+            this.start = start;
+            this.end = end;
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    private final Source source;
+    private final int length;
+
+    private int current = 0;
+    private int line = 1;
+    private int column = 0;
+
+    private SourceSplitter(Source source) {
+        this.source = source;
+        this.length = source.length();
+    }
+
+    // parts are at least minimumLength bytes long except the last one, 0 cuts before every declaration that allows it
+    public static List<Part> split(Source source, int minimumLength) {
+        return new SourceSplitter(source).split(minimumLength);
+    }
+
+    private List<Part> split(int minimumLength) {
+        List<Part> parts = new ArrayList<>();
+
+        int partStart = 0;
+        int partLine = line;
+        int partColumn = column;
+
+        // braces and parentheses together, once it goes below zero the nesting can't be trusted and nothing is cut
+        int depth = 0;
+
+        // the last byte of the last token
+        int last = ';';
+
+        while (current < length) {
+            int c = source.byteAt(current);
+
+            if (c == '\n') {
+                advance();
+
+                line++;
+                column = 1;
+
+                continue;
+            }
+
+            if (c == ' ' || c == '\r' || c == '\t') {
+                advance();
+
+                continue;
+            }
+
+            if (c == '/' && current + 1 < length && source.byteAt(current + 1) == '/') {
+                // A comment goes until the end of the line.
+                while (current < length && source.byteAt(current) != '\n') advance();
+
+                continue;
+            }
+
+            if (c == '"') {
+                skipString();
+
+                last = '"';
+
+                continue;
+            }
+
+            if (isAlpha(c)) {
+                int wordStart = current;
+                int wordLine = line;
+                int wordColumn = column;
+
+                while (current < length && isAlphaNumeric(source.byteAt(current))) advance();
+
+                boolean cut = depth == 0 && (last == ';' || last == '}')
+                        && wordStart > partStart && wordStart - partStart >= minimumLength
+                        && isDeclaration(wordStart, current - wordStart);
+
+                if (cut) {
+                    parts.add(new Part(partStart, wordStart, partLine, partColumn));
+
+                    partStart = wordStart;
+                    partLine = wordLine;
+                    partColumn = wordColumn;
+                }
+
+                last = 'a';
+
+                continue;
+            }
+
+            if (depth >= 0) {
+                if (c == '{' || c == '(') depth++;
+                if (c == '}' || c == ')') depth--;
+            }
+
+            advance();
+
+            last = c;
+        }
+
+        parts.add(new Part(partStart, length, partLine, partColumn));
+
+        return parts;
+    }
+
+    // the scanner moves to the next line before it steps over a newline in a string, and after one outside of it
+    private void skipString() {
+        advance();
+
+        while (current < length && source.byteAt(current) != '"') {
+            if (source.byteAt(current) == '\n') {
+                line++;
+                column = 1;
+            }
+
+            advance();
+        }
+
+        // The closing ".
+        if (current < length) advance();
+    }
+
+    private void advance() {
+        // the bytes continuing a UTF-8 sequence belong to the column of the byte that started it
+        if ((source.byteAt(current) & 0xc0) != 0x80) column += 1;
+
+        current++;
+    }
+
+    private boolean isDeclaration(int start, int length) {
+        if (length == 3) {
+            return source.byteAt(start) == 'f' && source.byteAt(start + 1) == 'u' && source.byteAt(start + 2) == 'n';
+        }
+
+        if (length == 5) {
+            return source.byteAt(start) == 'c' && source.byteAt(start + 1) == 'l' && source.byteAt(start + 2) == 'a'
+                    && source.byteAt(start + 3) == 's' && source.byteAt(start + 4) == 's';
+        }
+
+        return false;
+    }
+
+    private boolean isAlpha(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private boolean isAlphaNumeric(int c) {
+        return isAlpha(c) || (c >= '0' && c <= '9');
+    }
+}
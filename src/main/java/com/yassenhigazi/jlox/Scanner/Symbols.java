@@ -0,0 +1,49 @@
+package com.yassenhigazi.jlox.Scanner;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The process-wide table of identifier names. Every name gets a small number the first time a token carries it, and
+ * the runtime keys globals, fields and methods on that number, so a lookup compares ints instead of hashing and
+ * comparing strings. Parts of a script are scanned on several threads, so interning is safe to call from any of them.
+ */
+public final class Symbols {
+    // the symbol of tokens that aren't identifiers
+    public static final int NONE = -1;
+
+    private static final ConcurrentHashMap<String, Integer> symbols = new ConcurrentHashMap<>();
+
+    private static volatile String[] names = new String[256];
+    private static int count = 0;
+
+    private Symbols() {
+    }
+
+    public static int intern(String name) {
+        Integer symbol = symbols.get(name);
+
+        if (symbol != null) return symbol;
+
+        return add(name);
+    }
+
+    public static String name(int symbol) {
+        return names[symbol];
+    }
+
+    private static synchronized int add(String name) {
+        Integer symbol = symbols.get(name);
+
+        if (symbol != null) return symbol;
+
+        if (count == names.length) names = Arrays.copyOf(names, count * 2);
+
+        // the name is in place before the symbol can be found
+        names[count] = name;
+
+        symbols.put(name, count);
+
+        return count++;
+    }
+}
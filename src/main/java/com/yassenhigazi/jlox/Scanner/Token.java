@@ -6,14 +6,20 @@ public class Token {
     public final TokenType type;
     public final Object literal;
     public final int line;
-    final int column;
+    public final int column;
+
+    // the interned name of an identifier, see Symbols
+    public final int symbol;
 
     public Token(TokenType type, String lexeme, Object literal, int line, int column) {
         this.type = type;
-        this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
         this.column = column;
+        this.symbol = type == TokenType.IDENTIFIER ? Symbols.intern(lexeme) : Symbols.NONE;
+
+        // every token of a name shares the one string the table holds for it
+        this.lexeme = symbol == Symbols.NONE ? lexeme : Symbols.name(symbol);
     }
 
     public String toString() {
@@ -0,0 +1,18 @@
+package com.yassenhigazi.jlox.Scanner;
+
+import java.util.Iterator;
+import java.util.List;
+
+// hands the parser one token at a time, the last token is EOF and is returned for every call after it
+public interface TokenSource {
+    Token nextToken();
+
+    // for tokens that were already scanned into a list ending in EOF
+    static TokenSource of(List<Token> tokens) {
+        Iterator<Token> iterator = tokens.iterator();
+
+        Token eof = tokens.get(tokens.size() - 1);
+
+        return () -> iterator.hasNext() ? iterator.next() : eof;
+    }
+}
@@ -102,6 +102,11 @@ public class ASTPrinter implements ASTExpression.Visitor<String>, ASTStatement.V
         return print(expr.left) + " " + expr.operator.lexeme + " " + print(expr.right);
     }
 
+    @Override
+    public String visitMemoASTExpression(ASTExpression.Memo expr) {
+        return print(expr.expression);
+    }
+
     private String parenthesize(String name, ASTExpression... expressions) {
         StringBuilder builder = new StringBuilder();
 
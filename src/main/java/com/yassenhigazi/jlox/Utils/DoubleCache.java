@@ -0,0 +1,29 @@
+package com.yassenhigazi.jlox.Utils;
+
+// boxes doubles, reusing a shared instance for small integral values such as loop counters and indexes
+public final class DoubleCache {
+    private static final int LOW = -128;
+    private static final int HIGH = 1024;
+
+    private static final Double[] cache = new Double[HIGH - LOW];
+
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = (double) (i + LOW);
+        }
+    }
+
+    private DoubleCache() {
+    }
+
+    public static Double box(double value) {
+        int integral = (int) value;
+
+        // -0.0 compares equal to 0 but must keep its sign
+        if (integral == value && integral >= LOW && integral < HIGH && (integral != 0 || Double.doubleToRawLongBits(value) == 0L)) {
+            return cache[integral - LOW];
+        }
+
+        return value;
+    }
+}
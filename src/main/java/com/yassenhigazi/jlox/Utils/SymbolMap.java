@@ -0,0 +1,94 @@
+package com.yassenhigazi.jlox.Utils;
+
+import java.util.Arrays;
+
+/**
+ * A map from symbols to values, open addressing over two arrays so neither the keys nor the lookups box anything.
+ * A value may be null, containsKey tells a missing key from a key set to nil.
+ */
+public class SymbolMap<V> {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    public SymbolMap() {
+        this(8);
+    }
+
+    // capacity is a power of two
+    private SymbolMap(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+
+        Arrays.fill(keys, EMPTY);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int symbol) {
+        int index = indexOf(symbol);
+
+        return keys[index] == EMPTY ? null : (V) values[index];
+    }
+
+    public boolean containsKey(int symbol) {
+        return keys[indexOf(symbol)] != EMPTY;
+    }
+
+    public void put(int symbol, V value) {
+        int index = indexOf(symbol);
+
+        if (keys[index] == EMPTY) {
+            // kept at most half full, so probes stay short and there is always an empty slot to stop at
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+
+                index = indexOf(symbol);
+            }
+
+            keys[index] = symbol;
+            size++;
+        }
+
+        values[index] = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void putAll(SymbolMap<? extends V> other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) put(other.keys[i], (V) other.values[i]);
+        }
+    }
+
+    // the slot holding the symbol, or the empty slot it would go in
+    private int indexOf(int symbol) {
+        int mask = keys.length - 1;
+
+        // symbols are handed out in order, scattering them keeps neighbours from piling onto one run of slots
+        int hash = symbol * 0x9E3779B9;
+        int index = (hash ^ (hash >>> 16)) & mask;
+
+        while (keys[index] != EMPTY && keys[index] != symbol) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        size = 0;
+
+        Arrays.fill(keys, EMPTY);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) put(oldKeys[i], (V) oldValues[i]);
+        }
+    }
+}
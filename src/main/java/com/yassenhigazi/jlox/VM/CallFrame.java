@@ -0,0 +1,11 @@
+package com.yassenhigazi.jlox.VM;
+
+class CallFrame {
+    ObjClosure closure;
+
+    // only written back when the frame is left or an error needs the current line
+    int ip;
+
+    // stack index of slot zero
+    int base;
+}
@@ -0,0 +1,25 @@
+package com.yassenhigazi.jlox.VM;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class ObjClass {
+    final String name;
+    final Map<String, ObjClosure> methods = new HashMap<>();
+    ObjClosure initializer;
+
+    ObjClass(String name) {
+        this.name = name;
+    }
+
+    void defineMethod(String name, ObjClosure method) {
+        methods.put(name, method);
+
+        if (name.equals("init")) initializer = method;
+    }
+
+    @Override
+    public String toString() {
+        return "LoxClass {" + "name=" + name + '}';
+    }
+}
@@ -0,0 +1,18 @@
+package com.yassenhigazi.jlox.VM;
+
+import com.yassenhigazi.jlox.Compiler.ObjFunction;
+
+class ObjClosure {
+    final ObjFunction function;
+    final ObjUpvalue[] upvalues;
+
+    ObjClosure(ObjFunction function) {
+        this.function = function;
+        this.upvalues = new ObjUpvalue[function.upvalueCount];
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package com.yassenhigazi.jlox.VM;
+
+class ObjNative {
+    interface NativeFunction {
+        Object call(Object[] arguments);
+    }
+
+    final int arity;
+    final NativeFunction function;
+
+    ObjNative(int arity, NativeFunction function) {
+        this.arity = arity;
+        this.function = function;
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
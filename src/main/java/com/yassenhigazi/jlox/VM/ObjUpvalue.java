@@ -0,0 +1,15 @@
+package com.yassenhigazi.jlox.VM;
+
+class ObjUpvalue {
+    // stack slot of the captured variable while it is still open, -1 once closed
+    int slot;
+    Object closed;
+
+    // next open upvalue, the list is sorted by descending stack slot
+    ObjUpvalue next;
+
+    ObjUpvalue(int slot, ObjUpvalue next) {
+        this.slot = slot;
+        this.next = next;
+    }
+}
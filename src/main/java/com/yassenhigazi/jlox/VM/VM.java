@@ -0,0 +1,636 @@
+package com.yassenhigazi.jlox.VM;
+
+import com.yassenhigazi.jlox.Compiler.ObjFunction;
+import com.yassenhigazi.jlox.Compiler.OpCode;
+import com.yassenhigazi.jlox.Errors.NotCallableError;
+import com.yassenhigazi.jlox.Errors.RuntimeError;
+import com.yassenhigazi.jlox.Errors.UndefinedVariableError;
+import com.yassenhigazi.jlox.Errors.ZeroDivisionError;
+import com.yassenhigazi.jlox.JLox;
+import com.yassenhigazi.jlox.Scanner.Token;
+import com.yassenhigazi.jlox.Scanner.TokenType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stack based virtual machine running the bytecode produced by {@link com.yassenhigazi.jlox.Compiler.Compiler}.
+ * Runtime errors carry the same messages as the tree-walking interpreter.
+ */
+public class VM {
+    private static final int FRAMES_MAX = 1 << 16;
+
+    private Object[] stack = new Object[256];
+    private int sp = 0;
+
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+
+    private ObjUpvalue openUpvalues = null;
+
+    private final Map<String, Object> globals = new HashMap<>();
+
+    public VM() {
+        globals.put("clock", new ObjNative(0, arguments -> (double) System.currentTimeMillis() / 1000.0));
+    }
+
+    public void interpret(ObjFunction function) {
+        ObjClosure closure = new ObjClosure(function);
+
+        push(closure);
+
+        try {
+            call(closure, 0);
+
+            run();
+        } catch (RuntimeError error) {
+            JLox.runtimeError(error);
+
+            resetStack();
+        }
+    }
+
+    private void run() {
+        CallFrame frame = frames[frameCount - 1];
+        byte[] code = frame.closure.function.chunk.getCode();
+        Object[] constants = frame.closure.function.chunk.getConstants();
+        int ip = frame.ip;
+        int base = frame.base;
+
+        for (; ; ) {
+            switch (code[ip++]) {
+                case OpCode.CONSTANT: {
+                    push(constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]);
+                    ip += 2;
+                    break;
+                }
+
+                case OpCode.NIL:
+                    push(null);
+                    break;
+
+                case OpCode.TRUE:
+                    push(true);
+                    break;
+
+                case OpCode.FALSE:
+                    push(false);
+                    break;
+
+                case OpCode.POP:
+                    stack[--sp] = null;
+                    break;
+
+                case OpCode.GET_LOCAL:
+                    push(stack[base + (code[ip++] & 0xff)]);
+                    break;
+
+                case OpCode.SET_LOCAL:
+                    stack[base + (code[ip++] & 0xff)] = stack[sp - 1];
+                    break;
+
+                case OpCode.GET_GLOBAL: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+
+                    Object value = globals.get(name);
+
+                    if (value == null && !globals.containsKey(name)) {
+                        frame.ip = ip;
+                        throw new UndefinedVariableError(token(name), "Undefined variable '" + name + "'.");
+                    }
+
+                    push(value);
+                    break;
+                }
+
+                case OpCode.DEFINE_GLOBAL: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+
+                    globals.put(name, pop());
+                    break;
+                }
+
+                case OpCode.SET_GLOBAL: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+
+                    if (!globals.containsKey(name)) {
+                        frame.ip = ip;
+                        throw new UndefinedVariableError(token(name), "Undefined variable '" + name + "'.");
+                    }
+
+                    globals.put(name, stack[sp - 1]);
+                    break;
+                }
+
+                case OpCode.GET_UPVALUE: {
+                    ObjUpvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+
+                    push(upvalue.slot >= 0 ? stack[upvalue.slot] : upvalue.closed);
+                    break;
+                }
+
+                case OpCode.SET_UPVALUE: {
+                    ObjUpvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+
+                    if (upvalue.slot >= 0) {
+                        stack[upvalue.slot] = stack[sp - 1];
+                    } else {
+                        upvalue.closed = stack[sp - 1];
+                    }
+                    break;
+                }
+
+                case OpCode.GET_PROPERTY: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    frame.ip = ip;
+
+                    if (!(stack[sp - 1] instanceof ObjInstance instance)) {
+                        throw new RuntimeError(token(name), "Only instances have properties.");
+                    }
+
+                    if (instance.fields.containsKey(name)) {
+                        stack[sp - 1] = instance.fields.get(name);
+                        break;
+                    }
+
+                    stack[sp - 1] = new ObjBoundMethod(instance, findMethod(instance.klass, name));
+                    break;
+                }
+
+                case OpCode.SET_PROPERTY: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+
+                    if (!(stack[sp - 2] instanceof ObjInstance instance)) {
+                        frame.ip = ip;
+                        throw new RuntimeError(token(name), "Only instances have fields.");
+                    }
+
+                    Object value = pop();
+
+                    instance.fields.put(name, value);
+
+                    stack[sp - 1] = value;
+                    break;
+                }
+
+                case OpCode.GET_SUPER: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    frame.ip = ip;
+
+                    ObjClass superclass = (ObjClass) pop();
+
+                    stack[sp - 1] = new ObjBoundMethod(stack[sp - 1], findMethod(superclass, name));
+                    break;
+                }
+
+                case OpCode.EQUAL:
+                case OpCode.NOT_EQUAL:
+                case OpCode.GREATER:
+                case OpCode.GREATER_EQUAL:
+                case OpCode.LESS:
+                case OpCode.LESS_EQUAL: {
+                    byte op = code[ip - 1];
+                    Object right = pop();
+                    Object left = stack[sp - 1];
+
+                    if (left instanceof Double && right instanceof Double) {
+                        stack[sp - 1] = switch (op) {
+                            case OpCode.EQUAL -> (double) left == (double) right;
+                            case OpCode.NOT_EQUAL -> (double) left != (double) right;
+                            case OpCode.GREATER -> (double) left > (double) right;
+                            case OpCode.GREATER_EQUAL -> (double) left >= (double) right;
+                            case OpCode.LESS -> (double) left < (double) right;
+                            default -> (double) left <= (double) right;
+                        };
+                        break;
+                    }
+
+                    if (!(left instanceof String && right instanceof String)) {
+                        frame.ip = ip;
+                        throw new RuntimeError(token(""), "Operands must be numbers or two strings.");
+                    }
+
+                    int comparison = ((String) left).compareTo((String) right);
+
+                    stack[sp - 1] = switch (op) {
+                        case OpCode.EQUAL -> comparison == 0;
+                        case OpCode.NOT_EQUAL -> comparison != 0;
+                        case OpCode.GREATER -> comparison > 0;
+                        case OpCode.GREATER_EQUAL -> comparison >= 0;
+                        case OpCode.LESS -> comparison < 0;
+                        default -> comparison <= 0;
+                    };
+                    break;
+                }
+
+                case OpCode.ADD: {
+                    Object right = pop();
+                    Object left = stack[sp - 1];
+
+                    if (left instanceof Double && right instanceof Double) {
+                        stack[sp - 1] = (double) left + (double) right;
+                    } else if (left instanceof String || right instanceof String) {
+                        stack[sp - 1] = stringify(left) + stringify(right);
+                    } else {
+                        frame.ip = ip;
+                        throw new RuntimeError(token(""), "Operands must be two numbers or two strings.");
+                    }
+                    break;
+                }
+
+                case OpCode.SUBTRACT: {
+                    Object right = pop();
+                    Object left = stack[sp - 1];
+
+                    if (!(left instanceof Double && right instanceof Double)) {
+                        frame.ip = ip;
+                        throw new RuntimeError(token(""), "Operands must be numbers.");
+                    }
+
+                    stack[sp - 1] = (double) left - (double) right;
+                    break;
+                }
+
+                case OpCode.MULTIPLY: {
+                    Object right = pop();
+                    Object left = stack[sp - 1];
+
+                    if (!(left instanceof Double && right instanceof Double)) {
+                        frame.ip = ip;
+                        throw new RuntimeError(token(""), "Operands must be numbers.");
+                    }
+
+                    stack[sp - 1] = (double) left * (double) right;
+                    break;
+                }
+
+                case OpCode.DIVIDE: {
+                    Object right = pop();
+                    Object left = stack[sp - 1];
+
+                    if (!(left instanceof Double && right instanceof Double)) {
+                        frame.ip = ip;
+                        throw new RuntimeError(token(""), "Operands must be two numbers.");
+                    }
+
+                    if ((double) left == 0.0 || (double) right == 0.0) {
+                        frame.ip = ip;
+                        throw new ZeroDivisionError(token(""), "Can not Divide by zero.");
+                    }
+
+                    stack[sp - 1] = (double) left / (double) right;
+                    break;
+                }
+
+                case OpCode.NOT:
+                    stack[sp - 1] = !isTruthy(stack[sp - 1]);
+                    break;
+
+                case OpCode.NEGATE:
+                    stack[sp - 1] = -(double) stack[sp - 1];
+                    break;
+
+                case OpCode.PRINT:
+                    System.out.println(stringify(pop()));
+                    break;
+
+                case OpCode.JUMP: {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2 + offset;
+                    break;
+                }
+
+                case OpCode.JUMP_IF_FALSE: {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+
+                    if (!isTruthy(stack[sp - 1])) ip += offset;
+                    break;
+                }
+
+                case OpCode.LOOP: {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2 - offset;
+                    break;
+                }
+
+                case OpCode.CALL: {
+                    int argumentCount = code[ip++] & 0xff;
+                    frame.ip = ip;
+
+                    callValue(stack[sp - 1 - argumentCount], argumentCount);
+
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.function.chunk.getCode();
+                    constants = frame.closure.function.chunk.getConstants();
+                    ip = frame.ip;
+                    base = frame.base;
+                    break;
+                }
+
+                case OpCode.INVOKE: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    int argumentCount = code[ip + 2] & 0xff;
+                    ip += 3;
+                    frame.ip = ip;
+
+                    invoke(name, argumentCount);
+
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.function.chunk.getCode();
+                    constants = frame.closure.function.chunk.getConstants();
+                    ip = frame.ip;
+                    base = frame.base;
+                    break;
+                }
+
+                case OpCode.SUPER_INVOKE: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    int argumentCount = code[ip + 2] & 0xff;
+                    ip += 3;
+                    frame.ip = ip;
+
+                    ObjClass superclass = (ObjClass) pop();
+
+                    call(findMethod(superclass, name), argumentCount);
+
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.function.chunk.getCode();
+                    constants = frame.closure.function.chunk.getConstants();
+                    ip = frame.ip;
+                    base = frame.base;
+                    break;
+                }
+
+                case OpCode.CLOSURE: {
+                    ObjFunction function = (ObjFunction) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+
+                    ObjClosure closure = new ObjClosure(function);
+
+                    for (int i = 0; i < closure.upvalues.length; i++) {
+                        boolean isLocal = code[ip++] == 1;
+                        int index = code[ip++] & 0xff;
+
+                        closure.upvalues[i] = isLocal ? captureUpvalue(base + index) : frame.closure.upvalues[index];
+                    }
+
+                    push(closure);
+                    break;
+                }
+
+                case OpCode.CLOSE_UPVALUE:
+                    closeUpvalues(sp - 1);
+                    stack[--sp] = null;
+                    break;
+
+                case OpCode.RETURN: {
+                    Object result = pop();
+
+                    closeUpvalues(base);
+
+                    frameCount--;
+
+                    Arrays.fill(stack, base, sp, null);
+                    sp = base;
+
+                    if (frameCount == 0) return;
+
+                    push(result);
+
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.function.chunk.getCode();
+                    constants = frame.closure.function.chunk.getConstants();
+                    ip = frame.ip;
+                    base = frame.base;
+                    break;
+                }
+
+                case OpCode.CLASS: {
+                    push(new ObjClass((String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]));
+                    ip += 2;
+                    break;
+                }
+
+                case OpCode.INHERIT: {
+                    if (!(stack[sp - 2] instanceof ObjClass superclass)) {
+                        frame.ip = ip;
+                        throw new RuntimeError(token(""), "Superclass must be a class.");
+                    }
+
+                    ObjClass subclass = (ObjClass) pop();
+
+                    // classes can't change once defined, so copying the methods down is the same as walking up later
+                    subclass.methods.putAll(superclass.methods);
+                    subclass.initializer = superclass.initializer;
+                    break;
+                }
+
+                case OpCode.METHOD: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+
+                    ObjClosure method = (ObjClosure) pop();
+
+                    ((ObjClass) stack[sp - 1]).defineMethod(name, method);
+                    break;
+                }
+
+                default:
+                    throw new IllegalStateException("Unknown opcode " + code[ip - 1] + ".");
+            }
+        }
+    }
+
+    private void callValue(Object callee, int argumentCount) {
+        if (callee instanceof ObjClosure closure) {
+            call(closure, argumentCount);
+
+            return;
+        }
+
+        if (callee instanceof ObjBoundMethod bound) {
+            stack[sp - argumentCount - 1] = bound.receiver;
+
+            call(bound.method, argumentCount);
+
+            return;
+        }
+
+        if (callee instanceof ObjClass klass) {
+            stack[sp - argumentCount - 1] = new ObjInstance(klass);
+
+            if (klass.initializer != null) {
+                call(klass.initializer, argumentCount);
+            } else if (argumentCount != 0) {
+                throw new RuntimeError(token(""), "Expected 0 arguments but got " + argumentCount + ".");
+            }
+
+            return;
+        }
+
+        if (callee instanceof ObjNative nativeFunction) {
+            if (argumentCount != nativeFunction.arity) {
+                throw new RuntimeError(token(""), "Expected " + nativeFunction.arity + " arguments but got " + argumentCount + ".");
+            }
+
+            Object[] arguments = Arrays.copyOfRange(stack, sp - argumentCount, sp);
+
+            Object result = nativeFunction.function.call(arguments);
+
+            Arrays.fill(stack, sp - argumentCount - 1, sp, null);
+            sp -= argumentCount + 1;
+
+            push(result);
+
+            return;
+        }
+
+        throw new NotCallableError(token(""), "Can only call functions and classes.");
+    }
+
+    private void invoke(String name, int argumentCount) {
+        if (!(stack[sp - argumentCount - 1] instanceof ObjInstance instance)) {
+            throw new RuntimeError(token(name), "Only instances have properties.");
+        }
+
+        // a field holding a function shadows the method of the same name
+        if (instance.fields.containsKey(name)) {
+            Object value = instance.fields.get(name);
+
+            stack[sp - argumentCount - 1] = value;
+
+            callValue(value, argumentCount);
+
+            return;
+        }
+
+        call(findMethod(instance.klass, name), argumentCount);
+    }
+
+    private void call(ObjClosure closure, int argumentCount) {
+        if (argumentCount != closure.function.arity) {
+            throw new RuntimeError(token(""), "Expected " + closure.function.arity + " arguments but got " + argumentCount + ".");
+        }
+
+        if (frameCount == FRAMES_MAX) {
+            throw new RuntimeError(token(""), "Stack overflow.");
+        }
+
+        if (frameCount == frames.length) frames = Arrays.copyOf(frames, frameCount * 2);
+
+        CallFrame frame = frames[frameCount];
+
+        if (frame == null) frame = frames[frameCount] = new CallFrame();
+
+        frameCount++;
+
+        frame.closure = closure;
+        frame.ip = 0;
+        frame.base = sp - argumentCount - 1;
+    }
+
+    private ObjClosure findMethod(ObjClass klass, String name) {
+        ObjClosure method = klass.methods.get(name);
+
+        if (method == null) {
+            throw new RuntimeError(token(name), "Undefined property '" + name + "'.");
+        }
+
+        return method;
+    }
+
+    private ObjUpvalue captureUpvalue(int slot) {
+        ObjUpvalue previous = null;
+        ObjUpvalue upvalue = openUpvalues;
+
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+
+        if (upvalue != null && upvalue.slot == slot) return upvalue;
+
+        ObjUpvalue created = new ObjUpvalue(slot, upvalue);
+
+        if (previous == null) {
+            openUpvalues = created;
+        } else {
+            previous.next = created;
+        }
+
+        return created;
+    }
+
+    private void closeUpvalues(int last) {
+        while (openUpvalues != null && openUpvalues.slot >= last) {
+            ObjUpvalue upvalue = openUpvalues;
+
+            upvalue.closed = stack[upvalue.slot];
+            upvalue.slot = -1;
+
+            openUpvalues = upvalue.next;
+        }
+    }
+
+    private void push(Object value) {
+        if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+
+        stack[sp++] = value;
+    }
+
+    private Object pop() {
+        Object value = stack[--sp];
+
+        stack[sp] = null;
+
+        return value;
+    }
+
+    private void resetStack() {
+        Arrays.fill(stack, null);
+        sp = 0;
+        frameCount = 0;
+        openUpvalues = null;
+    }
+
+    // errors are reported at the line of the instruction the current frame is executing
+    private Token token(String lexeme) {
+        CallFrame frame = frames[frameCount - 1];
+
+        int line = frame.closure.function.chunk.getLine(frame.ip - 1);
+
+        return new Token(TokenType.IDENTIFIER, lexeme, null, line, 0);
+    }
+
+    private boolean isTruthy(Object object) {
+        if (object == null) return false;
+
+        if (object instanceof Boolean) return (boolean) object;
+
+        return true;
+    }
+
+    private String stringify(Object object) {
+        if (object == null) return "nil";
+
+        if (object instanceof Double) {
+            String text = object.toString();
+
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+
+            return text;
+        }
+
+        return object.toString();
+    }
+}
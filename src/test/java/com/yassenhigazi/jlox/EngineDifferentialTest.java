@@ -0,0 +1,74 @@
+package com.yassenhigazi.jlox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs every script under resources/scripts on the tree-walking interpreter, the closure engine and the bytecode VM,
+ * and checks that the other two print the same output, report the same errors and exit with the same status as the
+ * tree interpreter. Each run is a separate JVM, JLox keeps its state in statics and exits on errors.
+ */
+class EngineDifferentialTest {
+    private static final List<String> ENGINES = List.of("closures", "vm");
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @TestFactory
+    Stream<DynamicTest> enginesAgree() throws IOException, URISyntaxException {
+        Path directory = Paths.get(EngineDifferentialTest.class.getResource("/scripts").toURI());
+
+        List<Path> scripts;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            scripts = files.filter(file -> file.toString().endsWith(".jlox")).sorted().collect(Collectors.toList());
+        }
+
+        Assertions.assertFalse(scripts.isEmpty(), "no scripts in " + directory);
+
+        return scripts.stream().map(script -> DynamicTest.dynamicTest(script.getFileName().toString(), () -> {
+            String expected = run(script, "tree");
+
+            for (String engine : ENGINES) {
+                Assertions.assertEquals(expected, run(script, engine), engine + " engine differs on " + script.getFileName());
+            }
+        }));
+    }
+
+    // the output and errors of a run as one text, followed by the exit status
+    private static String run(Path script, String engine) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        // written to a file rather than read from a pipe, so a run that never ends can still be timed out
+        Path output = Files.createTempFile("jlox-" + engine + "-", ".out");
+
+        try {
+            Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), JLox.class.getName(),
+                    "--engine=" + engine, script.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(output.toFile())
+                    .start();
+
+            if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+
+                Assertions.fail(engine + " engine didn't finish " + script.getFileName() + " in " + TIMEOUT_SECONDS + " seconds");
+            }
+
+            return Files.readString(output, StandardCharsets.UTF_8) + "exit " + process.exitValue() + "\n";
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+}